@@ -7,6 +7,9 @@ import javax.microedition.khronos.opengles.GL10;
 
 import wildrune.ouyaframework.audio.AudioSystem;
 import wildrune.ouyaframework.graphics.GraphicsSystem;
+import wildrune.ouyaframework.graphics.RenderCommandBuffer;
+import wildrune.ouyaframework.graphics.RenderCommandExchange;
+import wildrune.ouyaframework.graphics.RenderStats;
 import wildrune.ouyaframework.graphics.utils.MultisampleConfigChooser;
 import wildrune.ouyaframework.input.InputSystem;
 
@@ -32,6 +35,7 @@ public abstract class OuyaGameActivity extends Activity implements GLSurfaceView
 	protected boolean isDebugMode;
 	protected boolean isLowResMode;
 	protected boolean isSampling;
+	protected boolean isThreadedMode;
 	
 	// ==================== SUBSYSTEMS =============================
 	public GraphicsSystem 	Graphics;
@@ -45,11 +49,25 @@ public abstract class OuyaGameActivity extends Activity implements GLSurfaceView
 	public ClockSystem.Timer 	gameTimer;
 	private float				mAccumulatedFrameTime;
 
+	// ===================== THREADED MODE ==========================
+	private RenderCommandExchange	exchange;
+	private Thread					updateThread;
+	private volatile boolean		isUpdateRunning;
+	private boolean					isUpdateAllowed;
+
 	// =====================  ABSTRACT METHODS ======================
 	protected abstract void Create();
 	protected abstract void Dispose();
 	protected abstract void Update(float dt);
 	protected abstract void Draw();
+
+	/***
+	 * Records the draw commands of this frame, only called in threaded mode
+	 * Runs on the update thread right after Update, so no GL calls are allowed in here.
+	 */
+	protected void Record(RenderCommandBuffer commands)
+	{
+	}
 	
 	// =====================  SYSTEM METHODS ========================
 	/***
@@ -62,6 +80,9 @@ public abstract class OuyaGameActivity extends Activity implements GLSurfaceView
 		isLowResMode = false;
 		isDebugMode = false;
 		isSampling = false;
+		isThreadedMode = false;
+		isUpdateRunning = false;
+		isUpdateAllowed = false;
 	}
 	
 	/***
@@ -111,6 +132,9 @@ public abstract class OuyaGameActivity extends Activity implements GLSurfaceView
 		Clock = new ClockSystem();
 		Clock.SetMaxFrameTime(500);
 		gameTimer = Clock.Get();
+
+		if(isThreadedMode)
+			exchange = new RenderCommandExchange();
 		
 		// OUYA initialization
 
@@ -125,6 +149,9 @@ public abstract class OuyaGameActivity extends Activity implements GLSurfaceView
 	@Override
 	protected void onPause() 
 	{
+		// the game may not update while paused or disposed
+		StopUpdateThread();
+
 		// check if we are finishing or not
 		if(isFinishing())
 		{
@@ -148,6 +175,8 @@ public abstract class OuyaGameActivity extends Activity implements GLSurfaceView
 	{
 		super.onResume();
 		
+		// the GL thread restarts the update thread on its next frame
+		AllowUpdateThread();
 		gameView.onResume();
 	}
 	
@@ -170,6 +199,9 @@ public abstract class OuyaGameActivity extends Activity implements GLSurfaceView
 		
 		// call subclass create method
 		Create();
+
+		// the update thread only starts once the game resources exist
+		StartUpdateThread();
 	}
 
 	/***
@@ -201,6 +233,17 @@ public abstract class OuyaGameActivity extends Activity implements GLSurfaceView
 			});
 		}
 
+		// the update thread records the frames, we only replay them
+		if(isThreadedMode)
+		{
+			// after a pause with a preserved context onSurfaceCreated is not called again
+			StartUpdateThread();
+			exchange.AcquireFrontBuffer((long)Clock.GetTargetFrameTime());
+			Draw();
+			RenderStats.EndFrame();
+			return;
+		}
+
 		// update clock
 		Clock.Tick();
 		
@@ -222,6 +265,90 @@ public abstract class OuyaGameActivity extends Activity implements GLSurfaceView
 		Input.UpdateFrame();
 		Update( gameTimer.GetElapsedSeconds() );
 		Draw();
+		
+		// store this frames rendering statistics
+		RenderStats.EndFrame();
+	}
+	
+	// =====================  THREADED MODE ======================
+	/***
+	 * Gets the commands recorded for the frame being drawn, only valid in threaded mode
+	 * Call this from Draw and replay it with RenderCommandBuffer.Execute.
+	 */
+	protected RenderCommandBuffer GetFrameCommands()
+	{
+		return exchange.GetFrontBuffer();
+	}
+
+	/***
+	 * Lets the GL thread start the update thread again
+	 */
+	private synchronized void AllowUpdateThread()
+	{
+		isUpdateAllowed = true;
+	}
+
+	/***
+	 * Starts the thread that updates and records the frames, called from the GL thread
+	 */
+	private synchronized void StartUpdateThread()
+	{
+		if(!isThreadedMode || !isUpdateAllowed || updateThread != null)
+			return;
+
+		isUpdateRunning = true;
+		updateThread = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				UpdateLoop();
+			}
+		}, "GameUpdate");
+		updateThread.start();
+	}
+
+	/***
+	 * Stops the update thread and waits until it is done
+	 */
+	private synchronized void StopUpdateThread()
+	{
+		isUpdateAllowed = false;
+		if(updateThread == null)
+			return;
+
+		isUpdateRunning = false;
+		updateThread.interrupt();
+
+		try
+		{
+			updateThread.join();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		updateThread = null;
+	}
+
+	/***
+	 * Updates the game and records a frame as long as the GL thread keeps up
+	 */
+	private void UpdateLoop()
+	{
+		while(isUpdateRunning)
+		{
+			// waits until the GL thread took the previous frame
+			RenderCommandBuffer commands = exchange.AcquireRecordBuffer();
+			if(commands == null)
+				break;
+
+			Clock.Tick();
+			Input.UpdateFrame();
+			Update( gameTimer.GetElapsedSeconds() );
+			Record(commands);
+
+			exchange.Publish();
+		}
 	}
 	
 	// =====================  OUYA INPUT ======================
@@ -1,10 +1,21 @@
 package wildrune.ouyaframework;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
+import wildrune.ouyaframework.graphics.GraphicsSystem;
+import wildrune.ouyaframework.graphics.atlas.TextureAtlas;
+import wildrune.ouyaframework.graphics.atlas.TextureAtlasBuilder;
 import wildrune.ouyaframework.graphics.basic.SpriteFont;
 import wildrune.ouyaframework.graphics.basic.Texture2D;
+import wildrune.ouyaframework.graphics.basic.TextureRegion;
+import wildrune.ouyaframework.graphics.particles.ParticleEmitterConfig;
 import wildrune.ouyaframework.graphics.states.SamplerState;
+import wildrune.ouyaframework.graphics.tilemap.TileMap;
+import wildrune.ouyaframework.graphics.tilemap.TileSet;
 import wildrune.ouyaframework.math.RuneMath;
 
 import android.content.res.AssetManager;
@@ -19,6 +30,8 @@ public class ResourceSystem
 	 * Statics
 	 */
 	private final static String LOG_TAG = "Assets";
+	private final static int TILEMAP_MAGIC = 0x544D4150; // "TMAP"
+	private final static int TILEMAP_VERSION = 1;
 	
 	/**
 	 * Data members
@@ -77,6 +90,194 @@ public class ResourceSystem
 		return null;
 	}
 	
+	/**
+	 * Load textures packed together in an atlas, the regions are named after their file
+	 * @param maxPageSize the maximum width and height of an atlas page
+	 * @param padding the empty pixels between the textures
+	 * @param extrude the amount of edge pixels repeated around the textures
+	 */
+	public TextureAtlas LoadTextureAtlas(String[] filePaths, int maxPageSize, int padding, int extrude)
+	{
+		TextureAtlasBuilder builder = new TextureAtlasBuilder(maxPageSize, padding, extrude);
+		
+		for(int i = 0; i < filePaths.length; i++)
+		{
+			try {
+				
+				final InputStream stream = fileIO.ReadFromAssets(filePaths[i]);
+				builder.Add(filePaths[i], LoadBitmapFromStream(stream, false));
+			}
+			catch(Exception e) {
+				Log.e(LOG_TAG, "Atlas texture loading Exception: " + e.getMessage());
+			}
+		}
+		
+		return builder.Build(true);
+	}
+	
+	/**
+	 * Load an atlas made by the atlas packer tool, all values are big endian
+	 * int magic "ATLS", int version, int pageCount, int regionCount,
+	 * per page a short length and the UTF-8 file name of the page next to the atlas file,
+	 * int nameHash[regionCount] sorted from low to high,
+	 * short region[regionCount * 9] with page, x, y, width, height, offsetX, offsetY, originalWidth, originalHeight
+	 */
+	public TextureAtlas LoadTextureAtlasFile(String filePath)
+	{
+		try {
+			
+			final ByteBuffer buffer = ByteBuffer.wrap( ReadAllBytes( fileIO.ReadFromAssets(filePath) ) );
+			
+			if( buffer.getInt() != TextureAtlas.FILE_MAGIC || buffer.getInt() != TextureAtlas.FILE_VERSION )
+			{
+				Log.e(LOG_TAG, "INVALID ATLAS: " + filePath);
+				return null;
+			}
+			
+			int pageCount = buffer.getInt();
+			int regionCount = buffer.getInt();
+			
+			// the pages are stored next to the atlas file
+			String directory = filePath.substring(0, filePath.lastIndexOf('/') + 1);
+			TextureAtlas atlas = new TextureAtlas();
+			Texture2D[] pages = new Texture2D[pageCount];
+			
+			for(int i = 0; i < pageCount; i++)
+			{
+				byte[] name = new byte[buffer.getShort()];
+				buffer.get(name);
+				
+				pages[i] = LoadTexture(directory + new String(name, "UTF-8"));
+				if(pages[i] == null)
+				{
+					atlas.Dispose();
+					return null;
+				}
+				
+				atlas.AddPage(pages[i]);
+			}
+			
+			// copy the tables in one go
+			int[] hashes = new int[regionCount];
+			buffer.asIntBuffer().get(hashes);
+			buffer.position(buffer.position() + regionCount * 4);
+			
+			short[] table = new short[regionCount * TextureAtlas.REGION_SHORTS];
+			buffer.asShortBuffer().get(table);
+			
+			TextureRegion[] regions = new TextureRegion[regionCount];
+			for(int i = 0; i < regionCount; i++)
+			{
+				int offset = i * TextureAtlas.REGION_SHORTS;
+				regions[i] = new TextureRegion(pages[table[offset]],
+						table[offset + 1], table[offset + 2], table[offset + 3], table[offset + 4],
+						table[offset + 5], table[offset + 6], table[offset + 7], table[offset + 8]);
+			}
+			
+			atlas.SetHashedRegions(hashes, regions);
+			return atlas;
+		}
+		catch(Exception e) {
+			Log.e(LOG_TAG, "Atlas loading Exception: " + e.getMessage());
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Load a tilemap from the binary map format, all values are big endian
+	 * int magic "TMAP", int version, int width, int height, int tileWidth, int tileHeight,
+	 * short tiles[width * height] with -1 for empty tiles,
+	 * int animationCount, followed by short tile and short frameCount per animation
+	 * @param graphics the graphics system the map draws through
+	 */
+	public TileMap LoadTileMap(GraphicsSystem graphics, String filePath, TileSet tileSet)
+	{
+		DataInputStream input = null;
+		try {
+			
+			input = new DataInputStream( new BufferedInputStream( fileIO.ReadFromAssets(filePath) ) );
+			
+			if( input.readInt() != TILEMAP_MAGIC || input.readInt() != TILEMAP_VERSION )
+			{
+				Log.e(LOG_TAG, "INVALID TILEMAP: " + filePath);
+				return null;
+			}
+			
+			int width = input.readInt();
+			int height = input.readInt();
+			int tileWidth = input.readInt();
+			int tileHeight = input.readInt();
+			
+			short[] tiles = new short[width * height];
+			for(int i = 0; i < tiles.length; i++)
+				tiles[i] = input.readShort();
+			
+			int animationCount = input.readInt();
+			for(int i = 0; i < animationCount; i++)
+			{
+				int tile = input.readShort();
+				int frameCount = input.readShort();
+				tileSet.SetAnimation(tile, frameCount);
+			}
+			
+			TileMap map = new TileMap(graphics, tileSet, width, height, tileWidth, tileHeight);
+			map.SetTiles(tiles);
+			
+			return map;
+		}
+		catch(Exception e) {
+			Log.e(LOG_TAG, "Tilemap loading Exception: " + e.getMessage());
+		}
+		finally {
+			try {
+				if(input != null)
+					input.close();
+			}
+			catch(Exception e) {
+				// nothing to do
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Load a particle emitter config from a text file
+	 */
+	public ParticleEmitterConfig LoadParticleConfig(String filePath)
+	{
+		try {
+			
+			return ParticleEmitterConfig.Parse( fileIO.ReadTextFromAssets(filePath) );
+		}
+		catch(Exception e) {
+			Log.e(LOG_TAG, "Particle config loading Exception: " + e.getMessage());
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Reads a whole stream and closes it
+	 */
+	private byte[] ReadAllBytes(InputStream stream) throws java.io.IOException
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(stream.available(), 1024));
+		byte[] chunk = new byte[4096];
+		int read;
+		
+		try {
+			while( (read = stream.read(chunk)) != -1 )
+				output.write(chunk, 0, read);
+		}
+		finally {
+			stream.close();
+		}
+		
+		return output.toByteArray();
+	}
+	
 	/**
 	 * Loads a bitmap from a stream
 	 * @param stream the inputstream where to load from
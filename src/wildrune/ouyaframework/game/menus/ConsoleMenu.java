@@ -2,6 +2,8 @@ package wildrune.ouyaframework.game.menus;
 
 import wildrune.ouyaframework.input.InputSystem;
 import wildrune.ouyaframework.graphics.SpriteBatch;
+import wildrune.ouyaframework.graphics.basic.Color;
+import wildrune.ouyaframework.graphics.basic.NinePatch;
 
 public class ConsoleMenu extends ScreenElement
 {
@@ -12,6 +14,11 @@ public class ConsoleMenu extends ScreenElement
 	
 	private int heightSpacing;
 	
+	// optional background panel
+	private NinePatch background;
+	private float backgroundWidth;
+	private float backgroundPadding;
+	
 	public ConsoleMenu(String id, int maxItems, int spacing)
 	{
 		super(id);
@@ -22,6 +29,20 @@ public class ConsoleMenu extends ScreenElement
 		menuItemsCount = 0;
 		selectedItem = 0;
 		heightSpacing = spacing;
+		background = null;
+	}
+	
+	/**
+	 * Sets a panel drawn behind the menu items
+	 * @param patch the nine patch to draw, null removes the background
+	 * @param width the width of the panel
+	 * @param padding the space between the panel edges and the items
+	 */
+	public void SetBackground(NinePatch patch, float width, float padding)
+	{
+		background = patch;
+		backgroundWidth = width;
+		backgroundPadding = padding;
 	}
 
 	@Override
@@ -36,6 +57,13 @@ public class ConsoleMenu extends ScreenElement
 	@Override
 	public void Draw(SpriteBatch batch, boolean selected, float dt)
 	{		
+		// draw the panel in a single call
+		if(background != null)
+		{
+			batch.DrawNinePatch(background, position.x - backgroundPadding, position.y - backgroundPadding, 
+					backgroundWidth, menuItemsCount * heightSpacing + backgroundPadding * 2.0f, Color.WHITE, 0);
+		}
+		
 		for(int i = 0; i < menuItemsCount; i++)
 		{
 			if(i == selectedItem)
@@ -7,10 +7,10 @@ import android.util.Log;
 
 import wildrune.ouyaframework.OuyaGameActivity;
 import wildrune.ouyaframework.game.screens.GameScreen.ScreenState;
+import wildrune.ouyaframework.graphics.ShapeBatch;
 import wildrune.ouyaframework.graphics.SpriteBatch;
-import wildrune.ouyaframework.graphics.SpriteBatch.SpriteEffect;
+import wildrune.ouyaframework.graphics.basic.Color;
 import wildrune.ouyaframework.graphics.basic.Rectangle;
-import wildrune.ouyaframework.graphics.basic.Texture2D;
 import wildrune.ouyaframework.graphics.states.BlendState;
 
 public class ScreenManager 
@@ -26,6 +26,7 @@ public class ScreenManager
 	 */
 	public OuyaGameActivity game;
 	public SpriteBatch spriteBatch;
+	public ShapeBatch shapeBatch;
 	
 	private List<GameScreen> screens;
 	private List<GameScreen> screensToUpdate;
@@ -33,8 +34,8 @@ public class ScreenManager
 	
 	private boolean initialized;
 	
-	// resources
-	private Texture2D blank;
+	// fade color, the alpha is set per fade
+	private final Color fadeColor;
 	
 	/**
 	 * Default constructor
@@ -45,7 +46,8 @@ public class ScreenManager
 		this.game = game;
 		this.initialized = false;
 		this.spriteBatch = null;
-		this.blank = null;
+		this.shapeBatch = null;
+		this.fadeColor = new Color(0.0f, 0.0f, 0.0f, 1.0f);
 		
 		screens = new ArrayList<GameScreen>();
 		screensToUpdate = new ArrayList<GameScreen>();
@@ -54,11 +56,21 @@ public class ScreenManager
 	
 	/**
 	 * Create resources for this screenmanager
+	 * @deprecated fading uses the shapebatch, a blank image is no longer needed. Use {@link #Create()}
 	 */
+	@Deprecated
 	public void Create(String blankImageFile)
+	{
+		Create();
+	}
+	
+	/**
+	 * Create resources for this screenmanager
+	 */
+	public void Create()
 	{
 		spriteBatch = new SpriteBatch(game.Graphics);
-		blank = game.Resources.LoadTexture(blankImageFile);
+		shapeBatch = new ShapeBatch(game.Graphics);
 		
 		initialized = true;
 		
@@ -81,7 +93,7 @@ public class ScreenManager
 	public void Dispose()
 	{
 		spriteBatch.Dispose();
-		blank.Dispose();
+		shapeBatch.Dispose();
 		
 		// dispose of screens if any left
 		List<GameScreen> localScreens = screens;
@@ -249,13 +261,10 @@ public class ScreenManager
 		Rectangle viewport = game.Graphics.viewportNormal;
 		
 		// draw fullscreen quad
-		spriteBatch.Begin(BlendState.AlphaBlend);
-		spriteBatch.DrawSprite(blank,
-				0, 0, viewport.width, viewport.height, 
-				0, 0, blank.width, blank.height, 
-				0.0f, 0.0f, 0.0f, alpha,
-				0.0f, 0.0f, 0.0f, 0.0f, SpriteEffect.NONE);
-		spriteBatch.End();
+		fadeColor.a = alpha;
+		shapeBatch.Begin(BlendState.AlphaBlend, null);
+		shapeBatch.FillRectangle(viewport, fadeColor);
+		shapeBatch.End();
 	}
 	
 	public void Debug()
@@ -0,0 +1,225 @@
+package wildrune.ouyaframework.graphics;
+
+import wildrune.ouyaframework.graphics.basic.Rectangle;
+import wildrune.ouyaframework.math.*;
+import android.opengl.Matrix;
+
+/**
+ * 2D camera looking at a position in the world with a zoom and rotation
+ * The combined view projection matrix is only rebuild when the camera changed.
+ * @author Wildrune
+ *
+ */
+public class Camera2D
+{
+	// camera properties
+	private float positionX;
+	private float positionY;
+	private float zoom;
+	private float rotation;
+	private final Rectangle viewport;
+
+	// cached data
+	private final Mat4 projection;
+	private final Mat4 view;
+	private final Mat4 transform;
+	private final Rectangle visibleRectangle;
+	private boolean dirty;
+
+	/**
+	 * Creates a camera for the given viewport looking at the center of it
+	 */
+	public Camera2D(Rectangle viewport)
+	{
+		this.viewport = new Rectangle(viewport);
+		this.zoom = 1.0f;
+		this.rotation = 0.0f;
+		this.positionX = viewport.width * 0.5f;
+		this.positionY = viewport.height * 0.5f;
+
+		projection = new Mat4();
+		view = new Mat4();
+		transform = new Mat4();
+		visibleRectangle = new Rectangle();
+
+		UpdateProjection();
+	}
+
+	public Camera2D(GraphicsSystem graphics)
+	{
+		this(graphics.viewportNormal);
+	}
+
+	/**
+	 * Sets the world position at the center of the viewport
+	 */
+	public void SetPosition(float x, float y)
+	{
+		positionX = x;
+		positionY = y;
+		dirty = true;
+	}
+
+	public void SetPosition(Vec2 position)
+	{
+		SetPosition(position.x, position.y);
+	}
+
+	/**
+	 * Moves the camera in world space
+	 */
+	public void Move(float x, float y)
+	{
+		SetPosition(positionX + x, positionY + y);
+	}
+
+	public float GetX()
+	{
+		return positionX;
+	}
+
+	public float GetY()
+	{
+		return positionY;
+	}
+
+	/**
+	 * Sets the zoom, values above 1 zoom in
+	 */
+	public void SetZoom(float zoom)
+	{
+		if(zoom < RuneMath.EPSILONH)
+			zoom = RuneMath.EPSILONH;
+
+		this.zoom = zoom;
+		dirty = true;
+	}
+
+	public float GetZoom()
+	{
+		return zoom;
+	}
+
+	/**
+	 * Sets the rotation of the camera in degrees
+	 */
+	public void SetRotation(float rotation)
+	{
+		this.rotation = rotation;
+		dirty = true;
+	}
+
+	public float GetRotation()
+	{
+		return rotation;
+	}
+
+	/**
+	 * Sets the size of the area the camera renders to
+	 */
+	public void SetViewport(float width, float height)
+	{
+		viewport.set(0, 0, width, height);
+		UpdateProjection();
+	}
+
+	public Rectangle GetViewport()
+	{
+		return viewport;
+	}
+
+	/**
+	 * Gets the combined view projection matrix, rebuild when the camera changed
+	 */
+	public Mat4 GetTransform()
+	{
+		if(dirty)
+			Update();
+
+		return transform;
+	}
+
+	/**
+	 * Gets the world space rectangle that bounds everything the camera can see
+	 */
+	public Rectangle GetVisibleRectangle()
+	{
+		if(dirty)
+			Update();
+
+		return visibleRectangle;
+	}
+
+	/**
+	 * Transforms a point on the screen to the world
+	 * @param screen the point on the screen
+	 * @param result the vector to put the world point in, can be the same as screen
+	 */
+	public void ScreenToWorld(Vec2 screen, Vec2 result)
+	{
+		float cos = (float) Math.cos(rotation * RuneMath.TORAD);
+		float sin = (float) Math.sin(rotation * RuneMath.TORAD);
+		float x = (screen.x - viewport.width * 0.5f) / zoom;
+		float y = (screen.y - viewport.height * 0.5f) / zoom;
+
+		result.x = x * cos - y * sin + positionX;
+		result.y = x * sin + y * cos + positionY;
+	}
+
+	/**
+	 * Transforms a point in the world to the screen
+	 * @param world the point in the world
+	 * @param result the vector to put the screen point in, can be the same as world
+	 */
+	public void WorldToScreen(Vec2 world, Vec2 result)
+	{
+		float cos = (float) Math.cos(rotation * RuneMath.TORAD);
+		float sin = (float) Math.sin(rotation * RuneMath.TORAD);
+		float x = world.x - positionX;
+		float y = world.y - positionY;
+
+		result.x = (x * cos + y * sin) * zoom + viewport.width * 0.5f;
+		result.y = (y * cos - x * sin) * zoom + viewport.height * 0.5f;
+	}
+
+	/**
+	 * Rebuilds the projection for the viewport
+	 */
+	private void UpdateProjection()
+	{
+		Matrix.orthoM(projection.elements, 0, 0, viewport.width, viewport.height, 0, -1.0f, 1.0f);
+		dirty = true;
+	}
+
+	/**
+	 * Rebuilds the view matrix and visible rectangle
+	 */
+	private void Update()
+	{
+		float cos = (float) Math.cos(rotation * RuneMath.TORAD);
+		float sin = (float) Math.sin(rotation * RuneMath.TORAD);
+		float centerX = viewport.width * 0.5f;
+		float centerY = viewport.height * 0.5f;
+
+		// translate the position to the origin, rotate the other way, zoom and move to the center
+		float[] m = view.elements;
+		Matrix.setIdentityM(m, 0);
+		m[0] = zoom * cos;
+		m[1] = -zoom * sin;
+		m[4] = zoom * sin;
+		m[5] = zoom * cos;
+		m[12] = centerX - zoom * (cos * positionX + sin * positionY);
+		m[13] = centerY - zoom * (cos * positionY - sin * positionX);
+
+		Mat4.Multiply(transform, projection, view);
+
+		// bounds of the rotated viewport in the world
+		float halfWidth = centerX / zoom;
+		float halfHeight = centerY / zoom;
+		float extentX = Math.abs(cos) * halfWidth + Math.abs(sin) * halfHeight;
+		float extentY = Math.abs(sin) * halfWidth + Math.abs(cos) * halfHeight;
+		visibleRectangle.set(positionX - extentX, positionY - extentY, extentX * 2.0f, extentY * 2.0f);
+
+		dirty = false;
+	}
+}
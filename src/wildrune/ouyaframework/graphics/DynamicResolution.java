@@ -0,0 +1,222 @@
+package wildrune.ouyaframework.graphics;
+
+import wildrune.ouyaframework.graphics.RenderStats.Stat;
+import wildrune.ouyaframework.graphics.basic.Color;
+import wildrune.ouyaframework.graphics.basic.Rectangle;
+import wildrune.ouyaframework.graphics.basic.RenderTarget2D;
+import wildrune.ouyaframework.graphics.states.SamplerState;
+import wildrune.ouyaframework.utils.interfaces.IDisposable;
+import android.util.Log;
+
+/**
+ * Renders the scene offscreen at a resolution that follows the frame time
+ * The scene is rendered into the bottom left part of a full size render target,
+ * so changing the resolution never reallocates anything. The projection stays the same,
+ * the smaller viewport scales the scene down by itself.
+ *
+ * With vsync a frame that makes it never shows how much time was left, so a higher
+ * resolution is probed after a while. When the probe fails the next one waits twice as long.
+ * @author Wildrune
+ *
+ */
+public class DynamicResolution implements IDisposable
+{
+	// constants
+	private final static String LOG_TAG = "DynamicResolution";
+	private final static float AVERAGE_WEIGHT = 0.1f;
+	private final static float MISS_RATIO = 1.15f;
+	private final static float HIT_RATIO = 1.05f;
+	private final static int DOWN_DELAY = 30;
+	private final static int UP_DELAY = 120;
+	private final static int MAX_UP_DELAY = 1920;
+
+	// 1080p, 900p and 720p from a 1080p target
+	private final static float[] defaultLevels = { 1.0f, 5.0f / 6.0f, 2.0f / 3.0f };
+
+	// members
+	private final GraphicsSystem graphics;
+	private final RenderTarget2D target;
+	private float[] levels;
+	private int level;
+	private int viewportWidth;
+	private int viewportHeight;
+	private boolean enabled;
+
+	// frame time tracking
+	private float targetFrameTime;
+	private float averageFrameTime;
+	private int framesSinceChange;
+	private int hitFrames;
+	private int upDelay;
+	private boolean probing;
+
+	/**
+	 * Creates the scene render target
+	 * @param width the width at full resolution
+	 * @param height the height at full resolution
+	 * @param depth if the scene needs a depth buffer
+	 * @param targetFrameTime the frame time to keep in miliseconds, see ClockSystem.GetTargetFrameTime
+	 */
+	public DynamicResolution(GraphicsSystem graphics, int width, int height, boolean depth, float targetFrameTime)
+	{
+		this.graphics = graphics;
+		this.targetFrameTime = targetFrameTime;
+
+		target = new RenderTarget2D();
+		if(!target.Create(width, height, depth, SamplerState.LinearClamp))
+			Log.e(LOG_TAG, "COULD NOT CREATE SCENE TARGET!");
+
+		levels = defaultLevels;
+		enabled = true;
+		upDelay = UP_DELAY;
+		averageFrameTime = targetFrameTime;
+		SetLevel(0);
+	}
+
+	@Override
+	public void Dispose()
+	{
+		target.Dispose();
+	}
+
+	/**
+	 * Sets the scales to step through, from high to low
+	 */
+	public void SetLevels(float[] scales)
+	{
+		levels = scales;
+		SetLevel(0);
+	}
+
+	/**
+	 * Sets the resolution level directly
+	 */
+	public void SetLevel(int index)
+	{
+		level = Math.max(0, Math.min(index, levels.length - 1));
+		viewportWidth = Math.max(1, (int)(target.width * levels[level]));
+		viewportHeight = Math.max(1, (int)(target.height * levels[level]));
+
+		framesSinceChange = 0;
+		hitFrames = 0;
+	}
+
+	/**
+	 * Enables or disables the scaling, the current level is kept when disabled
+	 */
+	public void SetEnabled(boolean enable)
+	{
+		enabled = enable;
+	}
+
+	public void SetTargetFrameTime(float ms)
+	{
+		targetFrameTime = ms;
+	}
+
+	public float GetScale()
+	{
+		return levels[level];
+	}
+
+	public int GetLevel()
+	{
+		return level;
+	}
+
+	public int GetWidth()
+	{
+		return viewportWidth;
+	}
+
+	public int GetHeight()
+	{
+		return viewportHeight;
+	}
+
+	public RenderTarget2D GetTarget()
+	{
+		return target;
+	}
+
+	/**
+	 * Picks the resolution from the frame time, call once every frame
+	 * @param frameTime the time of the last frame in miliseconds
+	 */
+	public void Update(float frameTime)
+	{
+		averageFrameTime += (frameTime - averageFrameTime) * AVERAGE_WEIGHT;
+		framesSinceChange++;
+
+		if(!enabled)
+			return;
+
+		// step down when missing the target
+		if(averageFrameTime > targetFrameTime * MISS_RATIO)
+		{
+			hitFrames = 0;
+			if(framesSinceChange >= DOWN_DELAY && level < levels.length - 1)
+			{
+				// a failed probe makes the next one wait longer
+				if(probing)
+					upDelay = Math.min(upDelay * 2, MAX_UP_DELAY);
+
+				probing = false;
+				SetLevel(level + 1);
+			}
+
+			return;
+		}
+
+		// probe a higher resolution after making the target for a while
+		if(averageFrameTime <= targetFrameTime * HIT_RATIO)
+		{
+			hitFrames++;
+
+			// a probe that survived is no longer a probe
+			if(probing && framesSinceChange >= upDelay)
+			{
+				probing = false;
+				upDelay = UP_DELAY;
+			}
+
+			if(hitFrames >= upDelay && level > 0)
+			{
+				probing = true;
+				SetLevel(level - 1);
+			}
+		}
+		else
+			hitFrames = 0;
+	}
+
+	/**
+	 * Starts rendering the scene into the target at the current resolution
+	 */
+	public void BeginScene()
+	{
+		graphics.PushRenderTarget(target);
+		graphics.SetViewport(0, 0, viewportWidth, viewportHeight);
+		RenderStats.Set(Stat.RENDER_SCALE, (long)(levels[level] * 100.0f + 0.5f));
+	}
+
+	/**
+	 * Goes back to rendering to the previous target
+	 */
+	public void EndScene()
+	{
+		graphics.PopRenderTarget();
+	}
+
+	/**
+	 * Draws the scene stretched over a destination, the batch must be started
+	 * The used part ends half a texel early, otherwise linear filtering blends in
+	 * the unused texels next to the edges of the rendered part.
+	 */
+	public void Draw(SpriteBatch batch, Rectangle destination)
+	{
+		float usedWidth = viewportWidth < target.width ? viewportWidth - 0.5f : viewportWidth;
+		float usedHeight = viewportHeight < target.height ? viewportHeight - 0.5f : viewportHeight;
+		batch.DrawRenderTarget(target, usedWidth, usedHeight, destination, Color.WHITE);
+	}
+}
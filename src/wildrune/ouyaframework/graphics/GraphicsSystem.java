@@ -4,9 +4,12 @@ import static android.opengl.GLES20.*;
 
 import wildrune.ouyaframework.graphics.basic.Color;
 import wildrune.ouyaframework.graphics.basic.Rectangle;
+import wildrune.ouyaframework.graphics.basic.RenderTarget2D;
 import wildrune.ouyaframework.graphics.states.BlendState;
+import wildrune.ouyaframework.graphics.states.DepthStencilState;
 import wildrune.ouyaframework.graphics.states.RasterizerState;
 import wildrune.ouyaframework.graphics.states.SamplerState;
+import android.util.Log;
 
 /***
  * Class managing the graphics
@@ -19,6 +22,8 @@ public class GraphicsSystem
 	 * Statics
 	 */
 	private final static float SAFE_AREA_RATIO = 0.05f;
+	private final static int MAX_RENDER_TARGETS = 8;
+	private final static String LOG_TAG = "GraphicsSystem";
 	
 	/**
 	 * Viewports
@@ -32,6 +37,15 @@ public class GraphicsSystem
 	public SamplerState 	currentSamplerState;
 	public BlendState 		currentBlendState;
 	public RasterizerState 	currentRasterizerState;
+	public DepthStencilState currentDepthStencilState;
+	
+	/**
+	 * Render targets, the pushed targets and the viewports to restore when they are popped
+	 */
+	private final RenderTarget2D[] renderTargetStack;
+	private final int[] viewportStack;
+	private int renderTargetCount;
+	private final int[] currentViewport;
 	
 	/***
 	 * Default constructor
@@ -49,6 +63,12 @@ public class GraphicsSystem
 		
 		// set safe area viewport
 		viewportSafeArea = new Rectangle(leftSafe, topSafe, rightSafe, bottomSafe);
+		
+		// render target stack
+		renderTargetStack = new RenderTarget2D[MAX_RENDER_TARGETS];
+		viewportStack = new int[MAX_RENDER_TARGETS * 4];
+		renderTargetCount = 0;
+		currentViewport = new int[] { 0, 0, width, height };
 	}
 	
 	/**
@@ -65,23 +85,84 @@ public class GraphicsSystem
 	 */
 	public void SetViewport(int x, int y, int w, int h)
 	{
+		currentViewport[0] = x;
+		currentViewport[1] = y;
+		currentViewport[2] = w;
+		currentViewport[3] = h;
 		glViewport(x, y, w, h);
 	}
 	
+	/**
+	 * Renders to a render target until it is popped, the viewport is set to the whole target
+	 * Draw with a Camera2D sized to the target to fill it.
+	 */
+	public void PushRenderTarget(RenderTarget2D target)
+	{
+		if(renderTargetCount >= MAX_RENDER_TARGETS)
+		{
+			Log.e(LOG_TAG, "Too many render targets pushed");
+			return;
+		}
+		
+		// remember the viewport to restore
+		int offset = renderTargetCount * 4;
+		System.arraycopy(currentViewport, 0, viewportStack, offset, 4);
+		renderTargetStack[renderTargetCount++] = target;
+		
+		glBindFramebuffer(GL_FRAMEBUFFER, target.framebufferHandle);
+		SetViewport(0, 0, target.width, target.height);
+	}
+	
+	/**
+	 * Goes back to the previous render target, or the screen, and its viewport
+	 */
+	public void PopRenderTarget()
+	{
+		if(renderTargetCount == 0)
+		{
+			Log.e(LOG_TAG, "No render target to pop");
+			return;
+		}
+		
+		renderTargetStack[--renderTargetCount] = null;
+		
+		int framebuffer = renderTargetCount > 0 ? renderTargetStack[renderTargetCount - 1].framebufferHandle : 0;
+		glBindFramebuffer(GL_FRAMEBUFFER, framebuffer);
+		
+		int offset = renderTargetCount * 4;
+		SetViewport(viewportStack[offset], viewportStack[offset + 1], viewportStack[offset + 2], viewportStack[offset + 3]);
+	}
+	
+	/**
+	 * Gets the render target that is rendered to, null for the screen
+	 */
+	public RenderTarget2D GetRenderTarget()
+	{
+		return renderTargetCount > 0 ? renderTargetStack[renderTargetCount - 1] : null;
+	}
+	
 	/**
 	 * Clears the main framebuffer
 	 */
 	public void Clear()
 	{
-		glClear(GL_COLOR_BUFFER_BIT);
+		// depth writes must be on for the depth buffer to be cleared
+		currentDepthStencilState = DepthStencilState.None;
+		currentDepthStencilState.SetState();
+		glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT | GL_STENCIL_BUFFER_BIT);
 	}
 	
 	/**
 	 * Sets and applies the state
+	 * @param state
 	 */
-	public void SetDepthStencileState()
+	public void SetDepthStencilState(DepthStencilState state)
 	{
-		
+		if(state != currentDepthStencilState)
+		{
+			currentDepthStencilState = state;
+			state.SetState();
+		}
 	}
 	
 	/**
@@ -0,0 +1,437 @@
+package wildrune.ouyaframework.graphics;
+
+import wildrune.ouyaframework.graphics.SpriteBatch.SpriteEffect;
+import wildrune.ouyaframework.graphics.SpriteBatch.SpriteSortMode;
+import wildrune.ouyaframework.graphics.basic.Color;
+import wildrune.ouyaframework.graphics.basic.Rectangle;
+import wildrune.ouyaframework.graphics.basic.SpriteFont;
+import wildrune.ouyaframework.graphics.basic.Texture2D;
+import wildrune.ouyaframework.graphics.basic.TextureRegion;
+import wildrune.ouyaframework.graphics.states.BlendState;
+import wildrune.ouyaframework.math.Vec2;
+
+/**
+ * Records draw calls so they can be replayed on the GL thread
+ * Commands are stored as an opcode with their floats and objects in flat arrays,
+ * the arrays only grow, so once warmed up recording does not allocate.
+ * Recorded objects like textures and strings must not change until the buffer is replayed.
+ * @author Wildrune
+ *
+ */
+public class RenderCommandBuffer
+{
+	// opcodes
+	private final static int SPRITES_BEGIN = 0;
+	private final static int SPRITES_END = 1;
+	private final static int SPRITE = 2;
+	private final static int REGION = 3;
+	private final static int TEXT = 4;
+	private final static int SHAPES_BEGIN = 5;
+	private final static int SHAPES_END = 6;
+	private final static int LINE = 7;
+	private final static int FILL_RECTANGLE = 8;
+	private final static int DRAW_RECTANGLE = 9;
+	private final static int FILL_TRIANGLE = 10;
+	private final static int FILL_CIRCLE = 11;
+	private final static int DRAW_CIRCLE = 12;
+
+	private final static int initialCommands = 256;
+	private final static SpriteEffect[] spriteEffects = SpriteEffect.values();
+
+	// members
+	private int[] opcodes;
+	private int opcodeCount;
+	private float[] floats;
+	private int floatCount;
+	private Object[] objects;
+	private int objectCount;
+
+	// reused during replay, the batches keep using the camera until they end
+	private final Camera2D spriteCamera;
+	private final Camera2D shapeCamera;
+	private final Color replayColor;
+	private final Vec2 replayPosition;
+
+	public RenderCommandBuffer()
+	{
+		opcodes = new int[initialCommands];
+		floats = new float[initialCommands * 8];
+		objects = new Object[initialCommands];
+
+		spriteCamera = new Camera2D(new Rectangle(0, 0, 1, 1));
+		shapeCamera = new Camera2D(new Rectangle(0, 0, 1, 1));
+		replayColor = new Color();
+		replayPosition = new Vec2();
+	}
+
+	/**
+	 * Removes all commands, keeps the memory
+	 */
+	public void Reset()
+	{
+		// let go of the recorded objects
+		for(int i = 0; i < objectCount; i++)
+			objects[i] = null;
+
+		opcodeCount = 0;
+		floatCount = 0;
+		objectCount = 0;
+	}
+
+	public int GetCommandCount()
+	{
+		return opcodeCount;
+	}
+
+	// RECORDING
+	/**
+	 * Records SpriteBatch.Begin
+	 * @param camera the camera to draw with, its current values are recorded, null draws in screen space
+	 */
+	public void BeginSprites(SpriteSortMode sortMode, BlendState blendState, Camera2D camera)
+	{
+		Reserve(7, 2);
+		opcodes[opcodeCount++] = SPRITES_BEGIN;
+		objects[objectCount++] = sortMode;
+		objects[objectCount++] = blendState;
+		PutCamera(camera);
+	}
+
+	public void EndSprites()
+	{
+		Reserve(0, 0);
+		opcodes[opcodeCount++] = SPRITES_END;
+	}
+
+	/**
+	 * Records a sprite, the source rect is in pixels
+	 */
+	public void DrawSprite(Texture2D texture,
+			float destX, float destY, float destWidth, float destHeight,
+			float sourceX, float sourceY, float sourceWidth, float sourceHeight,
+			Color color, float originX, float originY,
+			float depth, float rotation, SpriteEffect effect)
+	{
+		Reserve(17, 1);
+		opcodes[opcodeCount++] = SPRITE;
+		objects[objectCount++] = texture;
+
+		float[] f = floats;
+		int i = floatCount;
+		f[i] = destX;
+		f[i + 1] = destY;
+		f[i + 2] = destWidth;
+		f[i + 3] = destHeight;
+		f[i + 4] = sourceX;
+		f[i + 5] = sourceY;
+		f[i + 6] = sourceWidth;
+		f[i + 7] = sourceHeight;
+		f[i + 8] = color.r;
+		f[i + 9] = color.g;
+		f[i + 10] = color.b;
+		f[i + 11] = color.a;
+		f[i + 12] = originX;
+		f[i + 13] = originY;
+		f[i + 14] = depth;
+		f[i + 15] = rotation;
+		f[i + 16] = effect.ordinal();
+		floatCount = i + 17;
+	}
+
+	/**
+	 * Records a texture region
+	 */
+	public void DrawSprite(TextureRegion region, float x, float y, Color color, float depth)
+	{
+		Reserve(7, 1);
+		opcodes[opcodeCount++] = REGION;
+		objects[objectCount++] = region;
+		PutFloats(x, y, depth);
+		PutColor(color);
+	}
+
+	/**
+	 * Records text, the string must not change until the buffer is replayed
+	 */
+	public void DrawText(SpriteFont font, String text, float x, float y, Color color, float scale, float rotation, float spacing)
+	{
+		Reserve(9, 2);
+		opcodes[opcodeCount++] = TEXT;
+		objects[objectCount++] = font;
+		objects[objectCount++] = text;
+		PutFloats(x, y, scale);
+		PutFloats(rotation, spacing);
+		PutColor(color);
+	}
+
+	/**
+	 * Records ShapeBatch.Begin
+	 * @param camera the camera to draw with, its current values are recorded, null draws in screen space
+	 */
+	public void BeginShapes(BlendState blendState, Camera2D camera)
+	{
+		Reserve(7, 1);
+		opcodes[opcodeCount++] = SHAPES_BEGIN;
+		objects[objectCount++] = blendState;
+		PutCamera(camera);
+	}
+
+	public void EndShapes()
+	{
+		Reserve(0, 0);
+		opcodes[opcodeCount++] = SHAPES_END;
+	}
+
+	public void DrawLine(float x1, float y1, float x2, float y2, float thickness, Color color)
+	{
+		Reserve(9, 0);
+		opcodes[opcodeCount++] = LINE;
+		PutFloats(x1, y1, x2);
+		PutFloats(y2, thickness);
+		PutColor(color);
+	}
+
+	public void FillRectangle(float x, float y, float width, float height, Color color)
+	{
+		Reserve(8, 0);
+		opcodes[opcodeCount++] = FILL_RECTANGLE;
+		PutFloats(x, y, width);
+		PutFloat(height);
+		PutColor(color);
+	}
+
+	public void DrawRectangle(float x, float y, float width, float height, float thickness, Color color)
+	{
+		Reserve(9, 0);
+		opcodes[opcodeCount++] = DRAW_RECTANGLE;
+		PutFloats(x, y, width);
+		PutFloats(height, thickness);
+		PutColor(color);
+	}
+
+	public void FillTriangle(float x1, float y1, float x2, float y2, float x3, float y3, Color color)
+	{
+		Reserve(10, 0);
+		opcodes[opcodeCount++] = FILL_TRIANGLE;
+		PutFloats(x1, y1, x2);
+		PutFloats(y2, x3, y3);
+		PutColor(color);
+	}
+
+	public void FillCircle(float x, float y, float radius, Color color)
+	{
+		Reserve(7, 0);
+		opcodes[opcodeCount++] = FILL_CIRCLE;
+		PutFloats(x, y, radius);
+		PutColor(color);
+	}
+
+	public void DrawCircle(float x, float y, float radius, float thickness, Color color)
+	{
+		Reserve(8, 0);
+		opcodes[opcodeCount++] = DRAW_CIRCLE;
+		PutFloats(x, y, radius);
+		PutFloat(thickness);
+		PutColor(color);
+	}
+
+	// REPLAY
+	/**
+	 * Replays all commands, call on the GL thread
+	 * The buffer is not changed, so it can be replayed again.
+	 */
+	public void Execute(SpriteBatch sprites, ShapeBatch shapes)
+	{
+		float[] f = floats;
+		Object[] o = objects;
+		int fi = 0;
+		int oi = 0;
+
+		for(int c = 0; c < opcodeCount; c++)
+		{
+			switch(opcodes[c])
+			{
+				case SPRITES_BEGIN:
+				{
+					SpriteSortMode sortMode = (SpriteSortMode) o[oi];
+					BlendState blendState = (BlendState) o[oi + 1];
+					oi += 2;
+					sprites.Begin(sortMode, blendState, GetCamera(spriteCamera, f, fi));
+					fi += 7;
+					break;
+				}
+				case SPRITES_END:
+					sprites.End();
+					break;
+				case SPRITE:
+				{
+					Texture2D texture = (Texture2D) o[oi++];
+					sprites.DrawSprite(texture, f[fi], f[fi + 1], f[fi + 2], f[fi + 3],
+							f[fi + 4], f[fi + 5], f[fi + 6], f[fi + 7],
+							f[fi + 8], f[fi + 9], f[fi + 10], f[fi + 11],
+							f[fi + 12], f[fi + 13], f[fi + 14], f[fi + 15],
+							spriteEffects[(int) f[fi + 16]]);
+					fi += 17;
+					break;
+				}
+				case REGION:
+				{
+					TextureRegion region = (TextureRegion) o[oi++];
+					sprites.DrawSprite(region, f[fi], f[fi + 1], GetColor(f, fi + 3), f[fi + 2]);
+					fi += 7;
+					break;
+				}
+				case TEXT:
+				{
+					SpriteFont font = (SpriteFont) o[oi];
+					String text = (String) o[oi + 1];
+					oi += 2;
+					replayPosition.x = f[fi];
+					replayPosition.y = f[fi + 1];
+					font.DrawText(sprites, text, replayPosition, GetColor(f, fi + 5),
+							f[fi + 2], f[fi + 3], f[fi + 4], SpriteEffect.NONE);
+					fi += 9;
+					break;
+				}
+				case SHAPES_BEGIN:
+				{
+					BlendState blendState = (BlendState) o[oi++];
+					shapes.Begin(blendState, GetCamera(shapeCamera, f, fi));
+					fi += 7;
+					break;
+				}
+				case SHAPES_END:
+					shapes.End();
+					break;
+				case LINE:
+					shapes.DrawLine(f[fi], f[fi + 1], f[fi + 2], f[fi + 3], f[fi + 4], GetColor(f, fi + 5));
+					fi += 9;
+					break;
+				case FILL_RECTANGLE:
+					shapes.FillRectangle(f[fi], f[fi + 1], f[fi + 2], f[fi + 3], GetColor(f, fi + 4));
+					fi += 8;
+					break;
+				case DRAW_RECTANGLE:
+					shapes.DrawRectangle(f[fi], f[fi + 1], f[fi + 2], f[fi + 3], f[fi + 4], GetColor(f, fi + 5));
+					fi += 9;
+					break;
+				case FILL_TRIANGLE:
+					shapes.FillTriangle(f[fi], f[fi + 1], f[fi + 2], f[fi + 3], f[fi + 4], f[fi + 5], GetColor(f, fi + 6));
+					fi += 10;
+					break;
+				case FILL_CIRCLE:
+					shapes.FillCircle(f[fi], f[fi + 1], f[fi + 2], GetColor(f, fi + 3));
+					fi += 7;
+					break;
+				case DRAW_CIRCLE:
+					shapes.DrawCircle(f[fi], f[fi + 1], f[fi + 2], f[fi + 3], GetColor(f, fi + 4));
+					fi += 8;
+					break;
+			}
+		}
+	}
+
+	// HELPERS
+	/**
+	 * Makes room for a command
+	 */
+	private void Reserve(int floatAmount, int objectAmount)
+	{
+		if(opcodeCount >= opcodes.length)
+		{
+			int[] newOpcodes = new int[opcodes.length * 2];
+			System.arraycopy(opcodes, 0, newOpcodes, 0, opcodeCount);
+			opcodes = newOpcodes;
+		}
+
+		if(floatCount + floatAmount > floats.length)
+		{
+			float[] newFloats = new float[Math.max(floats.length * 2, floatCount + floatAmount)];
+			System.arraycopy(floats, 0, newFloats, 0, floatCount);
+			floats = newFloats;
+		}
+
+		if(objectCount + objectAmount > objects.length)
+		{
+			Object[] newObjects = new Object[Math.max(objects.length * 2, objectCount + objectAmount)];
+			System.arraycopy(objects, 0, newObjects, 0, objectCount);
+			objects = newObjects;
+		}
+	}
+
+	private void PutFloat(float a)
+	{
+		floats[floatCount++] = a;
+	}
+
+	private void PutFloats(float a, float b)
+	{
+		floats[floatCount] = a;
+		floats[floatCount + 1] = b;
+		floatCount += 2;
+	}
+
+	private void PutFloats(float a, float b, float c)
+	{
+		floats[floatCount] = a;
+		floats[floatCount + 1] = b;
+		floats[floatCount + 2] = c;
+		floatCount += 3;
+	}
+
+	private void PutColor(Color color)
+	{
+		floats[floatCount] = color.r;
+		floats[floatCount + 1] = color.g;
+		floats[floatCount + 2] = color.b;
+		floats[floatCount + 3] = color.a;
+		floatCount += 4;
+	}
+
+	/**
+	 * Records the values of a camera, 7 floats where the first one flags if there is a camera
+	 */
+	private void PutCamera(Camera2D camera)
+	{
+		float[] f = floats;
+		int i = floatCount;
+
+		if(camera != null)
+		{
+			Rectangle viewport = camera.GetViewport();
+			f[i] = 1;
+			f[i + 1] = camera.GetX();
+			f[i + 2] = camera.GetY();
+			f[i + 3] = camera.GetZoom();
+			f[i + 4] = camera.GetRotation();
+			f[i + 5] = viewport.width;
+			f[i + 6] = viewport.height;
+		}
+		else
+			f[i] = 0;
+
+		floatCount = i + 7;
+	}
+
+	private Camera2D GetCamera(Camera2D camera, float[] f, int i)
+	{
+		if(f[i] == 0)
+			return null;
+
+		camera.SetViewport(f[i + 5], f[i + 6]);
+		camera.SetPosition(f[i + 1], f[i + 2]);
+		camera.SetZoom(f[i + 3]);
+		camera.SetRotation(f[i + 4]);
+		return camera;
+	}
+
+	private Color GetColor(float[] f, int i)
+	{
+		Color color = replayColor;
+		color.r = f[i];
+		color.g = f[i + 1];
+		color.b = f[i + 2];
+		color.a = f[i + 3];
+		return color;
+	}
+}
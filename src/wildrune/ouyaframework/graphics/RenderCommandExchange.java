@@ -0,0 +1,103 @@
+package wildrune.ouyaframework.graphics;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands recorded command buffers from the update thread to the GL thread
+ * There are two buffers, the GL thread always holds the front one, so it can
+ * draw it again when the update thread has no new frame ready in time.
+ * The update thread records into the other one and waits until the GL thread
+ * has taken its previous frame, so it never runs more than one frame ahead.
+ * @author Wildrune
+ *
+ */
+public class RenderCommandExchange
+{
+	// members
+	private final RenderCommandBuffer[] buffers;
+	private final Semaphore recordFree;
+	private final Semaphore frameReady;
+	private int recordIndex;
+	private volatile int readyIndex;
+	private int frontIndex;
+
+	public RenderCommandExchange()
+	{
+		buffers = new RenderCommandBuffer[2];
+		buffers[0] = new RenderCommandBuffer();
+		buffers[1] = new RenderCommandBuffer();
+
+		// the GL thread starts with an empty front buffer
+		frontIndex = 1;
+		recordIndex = 0;
+		recordFree = new Semaphore(1);
+		frameReady = new Semaphore(0);
+	}
+
+	/**
+	 * Gets the buffer to record the next frame in, called from the update thread
+	 * Waits until the GL thread let go of it.
+	 * @return the emptied buffer, or null when the waiting thread was interrupted
+	 */
+	public RenderCommandBuffer AcquireRecordBuffer()
+	{
+		try
+		{
+			recordFree.acquire();
+		}
+		catch(InterruptedException e)
+		{
+			return null;
+		}
+
+		RenderCommandBuffer buffer = buffers[recordIndex];
+		buffer.Reset();
+		return buffer;
+	}
+
+	/**
+	 * Hands the recorded buffer to the GL thread, called from the update thread
+	 */
+	public void Publish()
+	{
+		readyIndex = recordIndex;
+		recordIndex = 1 - recordIndex;
+		frameReady.release();
+	}
+
+	/**
+	 * Gets the buffer to draw, called from the GL thread
+	 * Takes the newest frame when one is published in time, otherwise the last frame is drawn again.
+	 * @param timeoutMs how long to wait for a new frame
+	 */
+	public RenderCommandBuffer AcquireFrontBuffer(long timeoutMs)
+	{
+		boolean ready;
+		try
+		{
+			ready = frameReady.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+		}
+		catch(InterruptedException e)
+		{
+			ready = false;
+		}
+
+		// the old front buffer can be recorded again
+		if(ready)
+		{
+			frontIndex = readyIndex;
+			recordFree.release();
+		}
+
+		return buffers[frontIndex];
+	}
+
+	/**
+	 * Gets the buffer drawn last, called from the GL thread
+	 */
+	public RenderCommandBuffer GetFrontBuffer()
+	{
+		return buffers[frontIndex];
+	}
+}
@@ -0,0 +1,458 @@
+package wildrune.ouyaframework.graphics;
+
+import wildrune.ouyaframework.graphics.RenderStats.Stat;
+import wildrune.ouyaframework.graphics.SpriteBatch.SpriteEffect;
+import wildrune.ouyaframework.graphics.SpriteBatch.SpriteSortMode;
+import wildrune.ouyaframework.graphics.basic.Color;
+import wildrune.ouyaframework.graphics.basic.Effect;
+import wildrune.ouyaframework.graphics.basic.Rectangle;
+import wildrune.ouyaframework.graphics.basic.Texture2D;
+import wildrune.ouyaframework.graphics.basic.TextureRegion;
+import wildrune.ouyaframework.graphics.states.BlendState;
+import wildrune.ouyaframework.graphics.states.DepthStencilState;
+import wildrune.ouyaframework.utils.RadixSort;
+import android.util.Log;
+
+/**
+ * Collects the sprites of a whole frame and draws them in one sorted pass
+ * Every sprite gets a 64 bit key, from high to low bits:
+ * layer (4) | translucent (1) | effect (4) | blend state (3) | texture (20) | depth (32)
+ *
+ * Translucent sprites have to be drawn back to front, so for them the depth
+ * goes right after the translucent bit and the state bits follow it.
+ * Opaque sprites are drawn front to back with depth writes and translucent sprites
+ * are tested against that depth, so the render target needs a depth buffer
+ * when opaque and translucent sprites of a layer overlap.
+ *
+ * The spritebatch is only restarted when the layer, translucency, effect or blend state
+ * changes, texture changes are handled by the spritebatch itself.
+ * A sprite is translucent when its blend state is not BlendState.Opaque.
+ * NOT THREAD SAFE
+ * @author Wildrune
+ *
+ */
+public class RenderQueue
+{
+	// constants
+	private final static String LOG_TAG = "RenderQueue";
+	private final static int FLOATS_PER_ITEM = 16;
+
+	public final static int MAX_LAYERS = 16;
+	public final static int MAX_EFFECTS = 16;
+	public final static int MAX_BLEND_STATES = 8;
+
+	// key layout
+	private final static int LAYER_SHIFT = 60;
+	private final static int TRANSLUCENT_SHIFT = 59;
+	private final static int EFFECT_SHIFT = 55;
+	private final static int BLEND_SHIFT = 52;
+	private final static int TEXTURE_SHIFT = 32;
+	private final static long TEXTURE_MASK = 0xFFFFFL;
+
+	// effect, blend state and texture, kept together so both orders share them
+	private final static int MATERIAL_BITS = 27;
+	private final static long MATERIAL_MASK = (1L << MATERIAL_BITS) - 1;
+	private final static long TRANSLUCENT_BIT = 1L << TRANSLUCENT_SHIFT;
+
+	// members
+	private final SpriteBatch batch;
+	private final RadixSort radixSort;
+
+	// queued items
+	private int itemCount;
+	private int capacity;
+	private long[] keys;
+	private int[] indices;
+	private float[] itemData;
+	private Texture2D[] itemTexture;
+	private SpriteEffect[] itemEffect;
+
+	// the effects and blend states in use, the key stores their index
+	private final Effect[] effects;
+	private final BlendState[] blendStates;
+	private final Camera2D[] layerCameras;
+	private int effectCount;
+	private int blendStateCount;
+
+	// current state for new items
+	private int currentLayer;
+	private int currentEffect;
+	private int currentBlendState;
+
+	// counters
+	private int runCount;
+
+	/**
+	 * Creates a render queue
+	 * @param batch the spritebatch to draw with, it may not be started while the queue flushes
+	 * @param capacity the amount of sprites to preallocate
+	 */
+	public RenderQueue(SpriteBatch batch, int capacity)
+	{
+		this.batch = batch;
+		this.capacity = Math.max(capacity, 1);
+
+		keys = new long[this.capacity];
+		indices = new int[this.capacity];
+		itemData = new float[this.capacity * FLOATS_PER_ITEM];
+		itemTexture = new Texture2D[this.capacity];
+		itemEffect = new SpriteEffect[this.capacity];
+		radixSort = new RadixSort(this.capacity);
+
+		// index 0 is the default effect of the spritebatch
+		effects = new Effect[MAX_EFFECTS];
+		effectCount = 1;
+		blendStates = new BlendState[MAX_BLEND_STATES];
+		blendStates[0] = BlendState.NonPremultiplied;
+		blendStateCount = 1;
+		layerCameras = new Camera2D[MAX_LAYERS];
+
+		currentLayer = 0;
+		currentEffect = 0;
+		currentBlendState = 0;
+	}
+
+	// STATE
+	/**
+	 * Sets the layer of the next sprites, lower layers are drawn first
+	 */
+	public void SetLayer(int layer)
+	{
+		if(layer < 0 || layer >= MAX_LAYERS)
+		{
+			Log.e(LOG_TAG, "Layer out of range: " + layer);
+			return;
+		}
+
+		currentLayer = layer;
+	}
+
+	/**
+	 * Sets the camera a layer is drawn with, null draws in screen space
+	 */
+	public void SetLayerCamera(int layer, Camera2D camera)
+	{
+		layerCameras[layer] = camera;
+	}
+
+	/**
+	 * Sets the effect of the next sprites, null uses the default effect of the spritebatch
+	 */
+	public void SetEffect(Effect effect)
+	{
+		if(effect == null)
+		{
+			currentEffect = 0;
+			return;
+		}
+
+		int index = FindState(effects, effectCount, effect);
+		if(index < 0)
+		{
+			if(effectCount >= MAX_EFFECTS)
+			{
+				Log.e(LOG_TAG, "Too many effects, the maximum is " + MAX_EFFECTS);
+				return;
+			}
+
+			index = effectCount++;
+			effects[index] = effect;
+		}
+
+		currentEffect = index;
+	}
+
+	/**
+	 * Sets the blend state of the next sprites
+	 */
+	public void SetBlendState(BlendState blendState)
+	{
+		int index = FindState(blendStates, blendStateCount, blendState);
+		if(index < 0)
+		{
+			if(blendStateCount >= MAX_BLEND_STATES)
+			{
+				Log.e(LOG_TAG, "Too many blend states, the maximum is " + MAX_BLEND_STATES);
+				return;
+			}
+
+			index = blendStateCount++;
+			blendStates[index] = blendState;
+		}
+
+		currentBlendState = index;
+	}
+
+	/**
+	 * Looks up a state by reference, the tables are small so a linear search is fine
+	 */
+	private static int FindState(Object[] table, int count, Object state)
+	{
+		for(int i = 0; i < count; i++)
+		{
+			if(table[i] == state)
+				return i;
+		}
+
+		return -1;
+	}
+
+	// SUBMISSION
+	/**
+	 * Queues a sprite with a source rect in normalized texture coordinates
+	 * Uses the current layer, effect and blend state.
+	 */
+	public void Submit(Texture2D texture,
+			float destX, float destY, float destWidth, float destHeight,
+			float u, float v, float uWidth, float vHeight,
+			float r, float g, float b, float a,
+			float originX, float originY,
+			float depth, float rotation,
+			SpriteEffect effect)
+	{
+		if(texture == null)
+			return;
+
+		if(itemCount >= capacity)
+			Grow();
+
+		int item = itemCount++;
+		int offset = item * FLOATS_PER_ITEM;
+		float[] data = itemData;
+
+		data[offset] = destX;
+		data[offset + 1] = destY;
+		data[offset + 2] = destWidth;
+		data[offset + 3] = destHeight;
+		data[offset + 4] = u;
+		data[offset + 5] = v;
+		data[offset + 6] = uWidth;
+		data[offset + 7] = vHeight;
+		data[offset + 8] = r;
+		data[offset + 9] = g;
+		data[offset + 10] = b;
+		data[offset + 11] = a;
+		data[offset + 12] = originX;
+		data[offset + 13] = originY;
+		data[offset + 14] = rotation;
+		data[offset + 15] = depth;
+
+		itemTexture[item] = texture;
+		itemEffect[item] = effect;
+		keys[item] = CreateKey(texture, depth);
+		indices[item] = item;
+	}
+
+	/**
+	 * Queues a part of a texture stretched over a rectangle
+	 * @param source the part of the texture in pixels, null uses the whole texture
+	 */
+	public void Submit(Texture2D texture, Rectangle destination, Rectangle source, Color color, float depth)
+	{
+		if(texture == null)
+			return;
+
+		float u = 0.0f, v = 0.0f, uWidth = 1.0f, vHeight = 1.0f;
+		if(source != null)
+		{
+			float invWidth = 1.0f / texture.width;
+			float invHeight = 1.0f / texture.height;
+			u = source.x * invWidth;
+			v = source.y * invHeight;
+			uWidth = source.width * invWidth;
+			vHeight = source.height * invHeight;
+		}
+
+		Submit(texture, destination.x, destination.y, destination.width, destination.height,
+				u, v, uWidth, vHeight,
+				color.r, color.g, color.b, color.a,
+				0, 0, depth, 0,
+				SpriteEffect.NONE);
+	}
+
+	/**
+	 * Queues a texture region, trimmed regions are placed as if they were not trimmed
+	 */
+	public void Submit(TextureRegion region, float x, float y, Color color, float depth)
+	{
+		Submit(region.texture, x + region.offsetX, y + region.offsetY, region.width, region.height,
+				region.u, region.v, region.u2 - region.u, region.v2 - region.v,
+				color.r, color.g, color.b, color.a,
+				0, 0, depth, 0,
+				SpriteEffect.NONE);
+	}
+
+	/**
+	 * Packs the current state, the texture and the depth in a sort key
+	 */
+	private long CreateKey(Texture2D texture, float depth)
+	{
+		long key = (long)currentLayer << LAYER_SHIFT;
+		long material = ((long)currentEffect << EFFECT_SHIFT) | ((long)currentBlendState << BLEND_SHIFT)
+				| ((texture.textureHandle & TEXTURE_MASK) << TEXTURE_SHIFT);
+
+		// front to back, so the depth test rejects hidden pixels early
+		if(blendStates[currentBlendState] == BlendState.Opaque)
+			return key | material | RadixSort.FloatToKey(-depth);
+
+		// back to front first, the material only groups sprites at the same depth
+		return key | TRANSLUCENT_BIT | (RadixSort.FloatToKey(depth) << MATERIAL_BITS) | (material >>> TEXTURE_SHIFT);
+	}
+
+	/**
+	 * Gets the effect, blend state and texture bits of a key
+	 */
+	private static int GetMaterial(long key)
+	{
+		if((key & TRANSLUCENT_BIT) != 0)
+			return (int)(key & MATERIAL_MASK);
+
+		return (int)((key >>> TEXTURE_SHIFT) & MATERIAL_MASK);
+	}
+
+	/**
+	 * Gets the bits that need a spritebatch restart when they change,
+	 * the layer, the translucent bit, the effect and the blend state
+	 */
+	private static long GetState(long key)
+	{
+		return (key & (~0L << TRANSLUCENT_SHIFT)) | (GetMaterial(key) >>> (BLEND_SHIFT - TEXTURE_SHIFT));
+	}
+
+	/**
+	 * Grows the item arrays when the queue is full
+	 */
+	private void Grow()
+	{
+		int newCapacity = capacity * 2;
+
+		long[] newKeys = new long[newCapacity];
+		System.arraycopy(keys, 0, newKeys, 0, itemCount);
+		keys = newKeys;
+
+		int[] newIndices = new int[newCapacity];
+		System.arraycopy(indices, 0, newIndices, 0, itemCount);
+		indices = newIndices;
+
+		float[] newData = new float[newCapacity * FLOATS_PER_ITEM];
+		System.arraycopy(itemData, 0, newData, 0, itemCount * FLOATS_PER_ITEM);
+		itemData = newData;
+
+		Texture2D[] newTextures = new Texture2D[newCapacity];
+		System.arraycopy(itemTexture, 0, newTextures, 0, itemCount);
+		itemTexture = newTextures;
+
+		SpriteEffect[] newEffects = new SpriteEffect[newCapacity];
+		System.arraycopy(itemEffect, 0, newEffects, 0, itemCount);
+		itemEffect = newEffects;
+
+		capacity = newCapacity;
+	}
+
+	// DRAWING
+	/**
+	 * Sorts the queued sprites and draws them, then empties the queue
+	 */
+	public void Flush()
+	{
+		runCount = 0;
+		int count = itemCount;
+		if(count <= 0)
+			return;
+
+		long sortStart = System.nanoTime();
+		radixSort.Sort(keys, indices, count);
+		RenderStats.Add(Stat.SORT_TIME, System.nanoTime() - sortStart);
+
+		GraphicsSystem graphics = batch.GetGraphicsSystem();
+		long[] sortedKeys = keys;
+		int[] sortedIndices = indices;
+		float[] data = itemData;
+
+		long runState = 0;
+		boolean running = false;
+		boolean translucent = false;
+
+		for(int i = 0; i < count; i++)
+		{
+			long key = sortedKeys[i];
+			long state = GetState(key);
+
+			// restart the batch only when the state bits change
+			if(!running || state != runState)
+			{
+				if(running)
+					batch.End();
+
+				// the depth state only changes with the translucent bit
+				boolean keyTranslucent = (key & TRANSLUCENT_BIT) != 0;
+				if(!running || keyTranslucent != translucent)
+				{
+					if(keyTranslucent)
+						graphics.SetDepthStencilState(DepthStencilState.DepthRead);
+					else
+						graphics.SetDepthStencilState(DepthStencilState.Default);
+				}
+
+				BeginRun(key);
+				translucent = keyTranslucent;
+				runState = state;
+				running = true;
+				runCount++;
+			}
+
+			int item = sortedIndices[i];
+			int offset = item * FLOATS_PER_ITEM;
+			batch.DrawSpriteNormalized(itemTexture[item],
+					data[offset], data[offset + 1], data[offset + 2], data[offset + 3],
+					data[offset + 4], data[offset + 5], data[offset + 6], data[offset + 7],
+					data[offset + 8], data[offset + 9], data[offset + 10], data[offset + 11],
+					data[offset + 12], data[offset + 13], data[offset + 15], data[offset + 14],
+					itemEffect[item], !translucent);
+		}
+
+		if(running)
+			batch.End();
+
+		graphics.SetDepthStencilState(DepthStencilState.None);
+		Clear();
+	}
+
+	/**
+	 * Starts the spritebatch with the layer camera, effect and blend state of a key
+	 */
+	private void BeginRun(long key)
+	{
+		int layer = (int)(key >>> LAYER_SHIFT);
+		int material = GetMaterial(key);
+		int effect = material >>> (EFFECT_SHIFT - TEXTURE_SHIFT);
+		int blend = (material >>> (BLEND_SHIFT - TEXTURE_SHIFT)) & (MAX_BLEND_STATES - 1);
+
+		batch.Begin(SpriteSortMode.DEFERRED, blendStates[blend], layerCameras[layer], effects[effect]);
+	}
+
+	/**
+	 * Empties the queue without drawing
+	 */
+	public void Clear()
+	{
+		// do not keep textures alive
+		for(int i = 0; i < itemCount; i++)
+			itemTexture[i] = null;
+
+		itemCount = 0;
+	}
+
+	public int GetCount()
+	{
+		return itemCount;
+	}
+
+	/**
+	 * Gets the amount of spritebatch runs the last flush needed
+	 */
+	public int GetRunCount()
+	{
+		return runCount;
+	}
+}
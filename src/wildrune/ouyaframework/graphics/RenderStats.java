@@ -0,0 +1,175 @@
+package wildrune.ouyaframework.graphics;
+
+/**
+ * Per frame rendering statistics
+ * The graphics classes add to the counters of the current frame, EndFrame stores them
+ * in a rolling history so the last, min, average and max can be read without allocating.
+ * NOT THREAD SAFE, only use from the GL thread
+ * @author Wildrune
+ *
+ */
+public final class RenderStats
+{
+	// the statistics that are kept, times are in nanoseconds and the render scale in percent
+	public enum Stat
+	{
+		DRAW_CALLS,
+		SPRITES,
+		TEXTURE_BINDS,
+		SHADER_BINDS,
+		BUFFER_UPLOADS,
+		VERTEX_BYTES,
+		SORT_TIME,
+		VERTEX_TIME,
+		RENDER_SCALE
+	}
+
+	// constants
+	private final static int HISTORY_SIZE = 60;
+	private final static int STAT_COUNT = Stat.values().length;
+
+	// counters of the frame being rendered
+	private final static long[] frame = new long[STAT_COUNT];
+
+	// history of finished frames, HISTORY_SIZE entries per stat
+	private final static long[] history = new long[STAT_COUNT * HISTORY_SIZE];
+	private static int historyIndex = 0;
+	private static int historyCount = 0;
+	private static boolean enabled = true;
+
+	private RenderStats()
+	{
+	}
+
+	/**
+	 * Enables or disables collecting statistics
+	 */
+	public static void SetEnabled(boolean enable)
+	{
+		enabled = enable;
+	}
+
+	public static boolean IsEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Adds one to a counter of the current frame
+	 */
+	public static void Increment(Stat stat)
+	{
+		if(enabled)
+			frame[stat.ordinal()]++;
+	}
+
+	/**
+	 * Adds a value to a counter of the current frame
+	 */
+	public static void Add(Stat stat, long value)
+	{
+		if(enabled)
+			frame[stat.ordinal()] += value;
+	}
+
+	/**
+	 * Sets a value of the current frame, for values that are not counted
+	 */
+	public static void Set(Stat stat, long value)
+	{
+		if(enabled)
+			frame[stat.ordinal()] = value;
+	}
+
+	/**
+	 * Stores the counters of the current frame in the history and starts a new frame
+	 * Call this once at the end of every frame
+	 */
+	public static void EndFrame()
+	{
+		if(!enabled)
+			return;
+
+		for(int i = 0; i < STAT_COUNT; i++)
+		{
+			history[i * HISTORY_SIZE + historyIndex] = frame[i];
+			frame[i] = 0;
+		}
+
+		historyIndex = (historyIndex + 1) % HISTORY_SIZE;
+		if(historyCount < HISTORY_SIZE)
+			historyCount++;
+	}
+
+	/**
+	 * Clears the current frame and the history
+	 */
+	public static void Reset()
+	{
+		for(int i = 0; i < frame.length; i++)
+			frame[i] = 0;
+
+		historyIndex = 0;
+		historyCount = 0;
+	}
+
+	/**
+	 * Gets the value of the last finished frame
+	 */
+	public static long GetLast(Stat stat)
+	{
+		if(historyCount == 0)
+			return 0;
+
+		int last = (historyIndex + HISTORY_SIZE - 1) % HISTORY_SIZE;
+		return history[stat.ordinal() * HISTORY_SIZE + last];
+	}
+
+	/**
+	 * Gets the lowest value over the history
+	 */
+	public static long GetMin(Stat stat)
+	{
+		if(historyCount == 0)
+			return 0;
+
+		int offset = stat.ordinal() * HISTORY_SIZE;
+		long min = Long.MAX_VALUE;
+		for(int i = 0; i < historyCount; i++)
+			min = Math.min(min, history[offset + i]);
+
+		return min;
+	}
+
+	/**
+	 * Gets the highest value over the history
+	 */
+	public static long GetMax(Stat stat)
+	{
+		if(historyCount == 0)
+			return 0;
+
+		int offset = stat.ordinal() * HISTORY_SIZE;
+		long max = Long.MIN_VALUE;
+		for(int i = 0; i < historyCount; i++)
+			max = Math.max(max, history[offset + i]);
+
+		return max;
+	}
+
+	/**
+	 * Gets the average value over the history
+	 */
+	public static float GetAverage(Stat stat)
+	{
+		if(historyCount == 0)
+			return 0;
+
+		int offset = stat.ordinal() * HISTORY_SIZE;
+		long sum = 0;
+		for(int i = 0; i < historyCount; i++)
+			sum += history[offset + i];
+
+		return (float)sum / historyCount;
+	}
+}
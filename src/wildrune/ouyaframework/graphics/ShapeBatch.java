@@ -0,0 +1,460 @@
+package wildrune.ouyaframework.graphics;
+
+import static android.opengl.GLES20.*;
+
+import wildrune.ouyaframework.graphics.RenderStats.Stat;
+import wildrune.ouyaframework.graphics.basic.*;
+import wildrune.ouyaframework.graphics.states.BlendState;
+import wildrune.ouyaframework.math.*;
+import wildrune.ouyaframework.utils.interfaces.IDisposable;
+import android.util.Log;
+
+/**
+ * Batches lines, rectangles, circles and polygons with a color only shader
+ * Shapes are triangulated on the CPU and drawn with as few draw calls as possible.
+ * @author Wildrune
+ *
+ */
+public class ShapeBatch implements IDisposable
+{
+	// static constants
+	private final static String LOG_TAG = "ShapeBatch";
+
+	private final static int VERTEX_ELEMENTS = 3;
+	private final static int BYTES_PER_FLOAT = 4;
+	private final static int BYTES_PER_VERTEX = VERTEX_ELEMENTS * BYTES_PER_FLOAT;
+	private final static int maxVertices = 8192;
+	private final static int maxIndices = maxVertices * 3;
+
+	// circle tessellation, the max distance between the real circle and its segments in pixels
+	private final static float circleTolerance = 0.5f;
+	private final static int minCircleSegments = 8;
+	private final static int maxCircleSegments = 128;
+
+	// shape shaders
+	private final String vShader =
+			"attribute vec2 a_position;" +
+			"attribute vec4 a_color;" +
+
+			"uniform mat4 uTransform;" +
+
+			"varying vec4 v_color;" +
+
+			"void main()" +
+			"{" +
+				"gl_Position = uTransform * vec4(a_position, 0.0, 1.0);" +
+				"v_color = a_color;" +
+			"}";
+
+	private final String fShader =
+			"precision mediump float;" +
+			"varying vec4 v_color;" +
+			"void main()" +
+			"{" +
+				"gl_FragColor = v_color;" +
+			"}";
+
+	// members
+	private int[]			vertices;
+	private short[]			indices;
+	private int				vertexCount;
+	private int				indexCount;
+	private boolean			beginEndPair;
+
+	private VertexBuffer	vertexBuffer;
+	private IndexBuffer		indexBuffer;
+
+	private Effect			shapeEffect;
+	private Effect.Parameter matrixParameter;
+	private Mat4			transformMatrix;
+	private float			currentZoom;
+	private BlendState		currentBlendState;
+
+	// states are set through the graphics system so its state cache stays valid
+	private final GraphicsSystem graphics;
+
+	// shader program locations
+	int aPosition;
+	int aColor;
+
+	/**
+	 * Constructor
+	 */
+	public ShapeBatch(GraphicsSystem graphics)
+	{
+		this.graphics = graphics;
+
+		// create program
+		shapeEffect = new Effect(vShader, fShader);
+		matrixParameter = shapeEffect.GetParameter("uTransform");
+		aPosition = shapeEffect.GetAttribLocation("a_position");
+		aColor = shapeEffect.GetAttribLocation("a_color");
+
+		// create buffers
+		vertexBuffer = new VertexBuffer(maxVertices * VERTEX_ELEMENTS, false);
+		vertexBuffer.Create();
+		indexBuffer = new IndexBuffer(maxIndices, false);
+		indexBuffer.Create();
+
+		vertices = new int[maxVertices * VERTEX_ELEMENTS];
+		indices = new short[maxIndices];
+		vertexCount = 0;
+		indexCount = 0;
+		beginEndPair = false;
+
+		transformMatrix = Mat4.CreateOrtho2D( (int)graphics.viewportNormal.width, (int)graphics.viewportNormal.height);
+		currentZoom = 1.0f;
+	}
+
+	/**
+	 * Dispose of used resources
+	 */
+	@Override
+	public void Dispose()
+	{
+		shapeEffect.Dispose();
+		vertexBuffer.Dispose();
+		indexBuffer.Dispose();
+	}
+
+	/**
+	 * Start drawing shapes in screen space
+	 */
+	public void Begin()
+	{
+		Begin(BlendState.NonPremultiplied, null);
+	}
+
+	/**
+	 * Start drawing shapes
+	 * @param blendState the blendstate to draw with
+	 * @param camera the camera to draw with, null draws in screen space
+	 */
+	public void Begin(BlendState blendState, Camera2D camera)
+	{
+		if(beginEndPair)
+		{
+			Log.e(LOG_TAG, "Cannot nest Begin calls on a single ShapeBatch");
+			return;
+		}
+
+		currentBlendState = blendState;
+		if(camera != null)
+		{
+			matrixParameter.SetValue(camera.GetTransform().elements);
+			currentZoom = camera.GetZoom();
+		}
+		else
+		{
+			matrixParameter.SetValue(transformMatrix.elements);
+			currentZoom = 1.0f;
+		}
+
+		beginEndPair = true;
+	}
+
+	/**
+	 * End drawing shapes and flush them to the GPU
+	 */
+	public void End()
+	{
+		if(!beginEndPair)
+		{
+			Log.e(LOG_TAG, "Begin must be called before End");
+			return;
+		}
+
+		Flush();
+		beginEndPair = false;
+	}
+
+	/**
+	 * Draws the batched shapes
+	 */
+	private void Flush()
+	{
+		if(indexCount <= 0)
+			return;
+
+		// set states
+		shapeEffect.Apply();
+		graphics.SetBlendingState(currentBlendState);
+
+		// upload the data
+		vertexBuffer.Bind();
+		vertexBuffer.SetData(0, vertices, 0, vertexCount * VERTEX_ELEMENTS);
+		vertexBuffer.Apply();
+		vertexBuffer.SetVertexAttribPointer(0, aPosition, 2, BYTES_PER_VERTEX);
+		vertexBuffer.SetVertexAttribPointer(2 * BYTES_PER_FLOAT, aColor, 4, GL_UNSIGNED_BYTE, true, BYTES_PER_VERTEX);
+
+		indexBuffer.Bind();
+		indexBuffer.SetData(0, indices, 0, indexCount);
+		indexBuffer.Apply();
+
+		glDrawElements(GL_TRIANGLES, indexCount, GL_UNSIGNED_SHORT, 0);
+		RenderStats.Increment(Stat.DRAW_CALLS);
+
+		vertexCount = 0;
+		indexCount = 0;
+	}
+
+	/**
+	 * Makes room for a shape, flushes when the buffers are full
+	 * @return false if the shape can never fit
+	 */
+	private boolean Reserve(int vertexAmount, int indexAmount)
+	{
+		if(!beginEndPair)
+			return false;
+
+		if(vertexAmount > maxVertices || indexAmount > maxIndices)
+		{
+			Log.d(LOG_TAG, "Shape is too big for the ShapeBatch");
+			return false;
+		}
+
+		if(vertexCount + vertexAmount > maxVertices || indexCount + indexAmount > maxIndices)
+			Flush();
+
+		return true;
+	}
+
+	/**
+	 * Adds a vertex and returns its index
+	 */
+	private int AddVertex(float x, float y, int color)
+	{
+		int offset = vertexCount * VERTEX_ELEMENTS;
+		vertices[offset] = Float.floatToRawIntBits(x);
+		vertices[offset + 1] = Float.floatToRawIntBits(y);
+		vertices[offset + 2] = color;
+
+		return vertexCount++;
+	}
+
+	private void AddTriangle(int a, int b, int c)
+	{
+		indices[indexCount++] = (short) a;
+		indices[indexCount++] = (short) b;
+		indices[indexCount++] = (short) c;
+	}
+
+	/**
+	 * Adds a quad from 4 corners in winding order
+	 */
+	private void AddQuad(float x0, float y0, float x1, float y1, float x2, float y2, float x3, float y3, int color)
+	{
+		int first = AddVertex(x0, y0, color);
+		AddVertex(x1, y1, color);
+		AddVertex(x2, y2, color);
+		AddVertex(x3, y3, color);
+
+		AddTriangle(first, first + 1, first + 2);
+		AddTriangle(first, first + 2, first + 3);
+	}
+
+	/**
+	 * Gets the amount of segments for a circle so its error on screen stays below the tolerance
+	 */
+	private int GetCircleSegments(float radius)
+	{
+		float screenRadius = radius * currentZoom;
+		if(screenRadius <= circleTolerance)
+			return minCircleSegments;
+
+		int segments = (int) Math.ceil(Math.PI / Math.acos(1.0f - circleTolerance / screenRadius));
+		if(segments < minCircleSegments)
+			return minCircleSegments;
+
+		return segments > maxCircleSegments ? maxCircleSegments : segments;
+	}
+
+	/**
+	 * Draws a line with a thickness
+	 */
+	public void DrawLine(float x1, float y1, float x2, float y2, float thickness, Color color)
+	{
+		float dx = x2 - x1;
+		float dy = y2 - y1;
+		float length = (float) Math.sqrt(dx * dx + dy * dy);
+		if(length < RuneMath.EPSILONS || !Reserve(4, 6))
+			return;
+
+		// offset perpendicular to the line
+		float scale = thickness * 0.5f / length;
+		float nx = -dy * scale;
+		float ny = dx * scale;
+
+		AddQuad(x1 + nx, y1 + ny, x2 + nx, y2 + ny, x2 - nx, y2 - ny, x1 - nx, y1 - ny,
+				SpriteBatch.PackColor(color.r, color.g, color.b, color.a));
+	}
+
+	public void DrawLine(Vec2 start, Vec2 end, float thickness, Color color)
+	{
+		DrawLine(start.x, start.y, end.x, end.y, thickness, color);
+	}
+
+	/**
+	 * Draws a filled rectangle
+	 */
+	public void FillRectangle(float x, float y, float width, float height, Color color)
+	{
+		if(!Reserve(4, 6))
+			return;
+
+		AddQuad(x, y, x + width, y, x + width, y + height, x, y + height,
+				SpriteBatch.PackColor(color.r, color.g, color.b, color.a));
+	}
+
+	public void FillRectangle(Rectangle rectangle, Color color)
+	{
+		FillRectangle(rectangle.x, rectangle.y, rectangle.width, rectangle.height, color);
+	}
+
+	/**
+	 * Draws the outline of a rectangle, the outline lies inside the rectangle
+	 */
+	public void DrawRectangle(float x, float y, float width, float height, float thickness, Color color)
+	{
+		if(!Reserve(16, 24))
+			return;
+
+		int packed = SpriteBatch.PackColor(color.r, color.g, color.b, color.a);
+		float right = x + width;
+		float bottom = y + height;
+
+		AddQuad(x, y, right, y, right, y + thickness, x, y + thickness, packed);
+		AddQuad(x, bottom - thickness, right, bottom - thickness, right, bottom, x, bottom, packed);
+		AddQuad(x, y + thickness, x + thickness, y + thickness, x + thickness, bottom - thickness, x, bottom - thickness, packed);
+		AddQuad(right - thickness, y + thickness, right, y + thickness, right, bottom - thickness, right - thickness, bottom - thickness, packed);
+	}
+
+	public void DrawRectangle(Rectangle rectangle, float thickness, Color color)
+	{
+		DrawRectangle(rectangle.x, rectangle.y, rectangle.width, rectangle.height, thickness, color);
+	}
+
+	/**
+	 * Draws a filled triangle
+	 */
+	public void FillTriangle(float x1, float y1, float x2, float y2, float x3, float y3, Color color)
+	{
+		if(!Reserve(3, 3))
+			return;
+
+		int packed = SpriteBatch.PackColor(color.r, color.g, color.b, color.a);
+		int first = AddVertex(x1, y1, packed);
+		AddVertex(x2, y2, packed);
+		AddVertex(x3, y3, packed);
+		AddTriangle(first, first + 1, first + 2);
+	}
+
+	/**
+	 * Draws a filled circle
+	 */
+	public void FillCircle(float x, float y, float radius, Color color)
+	{
+		int segments = GetCircleSegments(radius);
+		if(!Reserve(segments + 1, segments * 3))
+			return;
+
+		int packed = SpriteBatch.PackColor(color.r, color.g, color.b, color.a);
+		int center = AddVertex(x, y, packed);
+
+		// rotate the point around the circle instead of calculating sin and cos for every segment
+		float step = RuneMath.TWOPI / segments;
+		float cos = (float) Math.cos(step);
+		float sin = (float) Math.sin(step);
+		float px = radius;
+		float py = 0.0f;
+
+		for(int i = 0; i < segments; i++)
+		{
+			AddVertex(x + px, y + py, packed);
+
+			float temp = px * cos - py * sin;
+			py = px * sin + py * cos;
+			px = temp;
+		}
+
+		for(int i = 0; i < segments; i++)
+			AddTriangle(center, center + 1 + i, center + 1 + (i + 1) % segments);
+	}
+
+	/**
+	 * Draws the outline of a circle, the outline lies inside the circle
+	 */
+	public void DrawCircle(float x, float y, float radius, float thickness, Color color)
+	{
+		int segments = GetCircleSegments(radius);
+		if(!Reserve(segments * 2, segments * 6))
+			return;
+
+		int packed = SpriteBatch.PackColor(color.r, color.g, color.b, color.a);
+		int first = vertexCount;
+		// an outline thicker than the radius becomes a filled circle
+		float inner = Math.max(radius - thickness, 0.0f) / radius;
+
+		float step = RuneMath.TWOPI / segments;
+		float cos = (float) Math.cos(step);
+		float sin = (float) Math.sin(step);
+		float px = radius;
+		float py = 0.0f;
+
+		// outer and inner vertex per segment
+		for(int i = 0; i < segments; i++)
+		{
+			AddVertex(x + px, y + py, packed);
+			AddVertex(x + px * inner, y + py * inner, packed);
+
+			float temp = px * cos - py * sin;
+			py = px * sin + py * cos;
+			px = temp;
+		}
+
+		for(int i = 0; i < segments; i++)
+		{
+			int current = first + i * 2;
+			int next = first + ((i + 1) % segments) * 2;
+			AddTriangle(current, next, current + 1);
+			AddTriangle(next, next + 1, current + 1);
+		}
+	}
+
+	/**
+	 * Draws a filled convex polygon
+	 * @param points the points as x y pairs
+	 * @param pointCount the amount of points
+	 */
+	public void FillPolygon(float[] points, int pointCount, Color color)
+	{
+		if(pointCount < 3 || !Reserve(pointCount, (pointCount - 2) * 3))
+			return;
+
+		int packed = SpriteBatch.PackColor(color.r, color.g, color.b, color.a);
+		int first = vertexCount;
+		for(int i = 0; i < pointCount; i++)
+			AddVertex(points[i * 2], points[i * 2 + 1], packed);
+
+		// triangle fan
+		for(int i = 1; i < pointCount - 1; i++)
+			AddTriangle(first, first + i, first + i + 1);
+	}
+
+	/**
+	 * Draws the outline of a closed polygon
+	 * @param points the points as x y pairs
+	 * @param pointCount the amount of points
+	 */
+	public void DrawPolygon(float[] points, int pointCount, float thickness, Color color)
+	{
+		if(pointCount < 2)
+			return;
+
+		for(int i = 0; i < pointCount; i++)
+		{
+			int next = (i + 1) % pointCount;
+			DrawLine(points[i * 2], points[i * 2 + 1], points[next * 2], points[next * 2 + 1], thickness, color);
+		}
+	}
+}
@@ -2,12 +2,13 @@ package wildrune.ouyaframework.graphics;
 
 import static android.opengl.GLES20.*;
 
-import java.util.Arrays;
-import java.util.Comparator;
-
+import wildrune.ouyaframework.graphics.RenderStats.Stat;
 import wildrune.ouyaframework.graphics.basic.*;
 import wildrune.ouyaframework.graphics.states.BlendState;
+import wildrune.ouyaframework.graphics.states.DepthStencilState;
 import wildrune.ouyaframework.math.*;
+import wildrune.ouyaframework.utils.RadixSort;
+import java.util.concurrent.Semaphore;
 import android.util.Log;
 
 /**
@@ -25,13 +26,19 @@ public class SpriteBatch
 	private final static int COLOR_ELEMENT_COUNT = 4;
 	private final static int UV_ELEMENT_COUNT = 2;
 	private final static int VERTEX_ELEMENTS = POSITION_ELEMENT_COUNT + COLOR_ELEMENT_COUNT + UV_ELEMENT_COUNT;
+	private final static int PACKED_VERTEX_ELEMENTS = 5;
+	private final static int EXPANDED_VERTEX_ELEMENTS = 11;
 	private final static int BYTES_PER_FLOAT = 4;
 	
 	// batch data
 	private final static int maxBatchSize = 1024;
+	private final static int vertexBufferCount = 3;
 	private final static int initialQueueSize = 64;
+	private final static int initialTextureTableSize = 8;
 	private final static int verticesPerSprite = 4;
 	private final static int indicesPerSprite = 6;
+	private final static int maxTextureUnits = 8;
+	private final static int defaultParallelThreshold = 3000;
 	
 	// vector2 for corner offsets
 	private static final Vec2[] cornerOffsets;
@@ -44,6 +51,23 @@ public class SpriteBatch
 		FLIP_VERTICAL;
 	}
 	
+	// Layout of the vertices uploaded to the GPU
+	public enum VertexFormat
+	{
+		// position xyz, color rgba and uv as floats, 36 bytes
+		STANDARD,
+		// position xy and depth as floats, color as 4 normalized unsigned bytes
+		// and uv as 2 normalized unsigned shorts, 20 bytes. Uv's must be in [0, 1]
+		PACKED,
+		// the sprite record itself, expanded to the corners and rotated in the vertex shader
+		// destination, origin, rotation and depth as floats, the uv rectangle as 4 normalized
+		// unsigned shorts and color as 4 normalized unsigned bytes, 44 bytes. Uv's must be in [0, 1]
+		// every vertex repeats the record, so a sprite uploads 176 bytes against 144 for STANDARD
+		// and 80 for PACKED. It trades bandwidth for the CPU time of generating the corners,
+		// only use it when vertex generation is the bottleneck and PACKED does not fit
+		EXPANDED
+	}
+	
 	// sprites can be sorted in different ways
 	public enum SpriteSortMode
 	{
@@ -51,14 +75,24 @@ public class SpriteBatch
 		IMMEDIATE,
 		TEXTURE,
 		BACKTOFRONT,
-		FRONTTOBACK
+		FRONTTOBACK,
+		// opaque sprites front to back with depth writes and no blending,
+		// then translucent sprites back to front tested against that depth
+		DEPTHTESTED
 	}
 	
-	// spritebath shaders
-	private final String vShader =
-			"attribute vec3 a_position;" +
+	// spritebath shaders, generated for the vertex format and texture unit count
+	private String CreateVertexShader()
+	{
+		if(vertexFormat == VertexFormat.EXPANDED)
+			return CreateExpandedVertexShader();
+		
+		boolean packed = (vertexFormat == VertexFormat.PACKED);
+		
+		return (packed ? "attribute vec2 a_position;" + "attribute float a_depth;" : "attribute vec3 a_position;") +
 			"attribute vec4 a_color;" +
 			"attribute vec2 a_texcoord_one;" +
+			(textureUnits > 1 ? "attribute float a_texslot;" + "varying float v_texslot;" : "") +
 		
 			"uniform mat4 uTransform;" +
 		
@@ -67,52 +101,161 @@ public class SpriteBatch
 		
 			"void main()" +
 			"{" +
-				"gl_Position = uTransform * vec4(a_position, 1.0);" +  
+				(packed ? "gl_Position = uTransform * vec4(a_position, a_depth, 1.0);" : "gl_Position = uTransform * vec4(a_position, 1.0);") +
 				"v_color = a_color;" +
-				"v_texcoord_one = a_texcoord_one;" +              
+				"v_texcoord_one = a_texcoord_one;" +
+				(textureUnits > 1 ? "v_texslot = a_texslot;" : "") +
 			"}";
+	}
 	
-	
-	private final String fShader = 
-			"precision mediump float;" +
-			"uniform sampler2D u_texture_one;" +	
+	// every vertex holds the sprite record, the corner comes from a static buffer
+	private String CreateExpandedVertexShader()
+	{
+		return "attribute vec4 a_dest;" +
+			"attribute vec4 a_transform;" +
+			"attribute vec4 a_texrect;" +
+			"attribute vec4 a_color;" +
+			"attribute vec2 a_corner;" +
+			(textureUnits > 1 ? "attribute float a_texslot;" + "varying float v_texslot;" : "") +
+			
+			"uniform mat4 uTransform;" +
+			
 			"varying vec4 v_color;" +
 			"varying vec2 v_texcoord_one;" +
+			
 			"void main()" +
 			"{" +
-				"gl_FragColor = v_color * texture2D(u_texture_one, v_texcoord_one );" +
+				// scale, offset and rotate the corner like RenderSprite does
+				"vec2 local = a_corner * a_dest.zw - a_transform.xy;" +
+				"float c = cos(a_transform.z);" +
+				"float s = sin(a_transform.z);" +
+				"vec2 pos = floor(vec2(local.x * c - local.y * s, local.x * s + local.y * c) + a_dest.xy);" +
+				"gl_Position = uTransform * vec4(pos, a_transform.w, 1.0);" +
+				"v_color = a_color;" +
+				"v_texcoord_one = mix(a_texrect.xy, a_texrect.zw, a_corner);" +
+				(textureUnits > 1 ? "v_texslot = a_texslot;" : "") +
 			"}";
+	}
 	
-	// comparators
-	private final TextureComp TexComp = new TextureComp();
-	private final BackToFrontComp BackFrontComp = new BackToFrontComp();
-	private final FrontToBackComp FrontBackComp = new FrontToBackComp();
+	private String CreateFragmentShader()
+	{
+		if(textureUnits <= 1)
+		{
+			return "precision mediump float;" +
+				"uniform sampler2D u_texture_one;" +	
+				"varying vec4 v_color;" +
+				"varying vec2 v_texcoord_one;" +
+				"void main()" +
+				"{" +
+					"gl_FragColor = v_color * texture2D(u_texture_one, v_texcoord_one );" +
+				"}";
+		}
+		
+		// samplers can only be indexed by constants, so select the unit with a branch per unit
+		StringBuilder source = new StringBuilder();
+		source.append("precision mediump float;");
+		source.append("uniform sampler2D u_textures[").append(textureUnits).append("];");
+		source.append("varying vec4 v_color;");
+		source.append("varying vec2 v_texcoord_one;");
+		source.append("varying float v_texslot;");
+		source.append("void main()");
+		source.append("{");
+		source.append("vec4 texColor;");
+		for(int i = 0; i < textureUnits; i++)
+		{
+			if(i > 0)
+				source.append("else ");
+			
+			if(i < textureUnits - 1)
+				source.append("if(v_texslot < ").append(i).append(".5) ");
+			
+			source.append("texColor = texture2D(u_textures[").append(i).append("], v_texcoord_one);");
+		}
+		source.append("gl_FragColor = v_color * texColor;");
+		source.append("}");
+		
+		return source.toString();
+	}
 	
-	// graphics states
+	// graphics states, set through the graphics system so its state cache stays valid
+	private final GraphicsSystem graphics;
 	BlendState currentBlendState;
 	
-	// members
-	private SpriteInfo[] 	spriteInfoQueue;
+	// sprite queue, stored as parallel arrays with 4 floats per sprite for the float data
+	private float[]			spriteDestination;
+	private float[]			spriteSource;
+	private float[]			spriteColor;
+	private float[]			spriteOriginRotationDepth;
+	private int[]			spriteTextureSlot;
+	private int[]			spriteEffect;
+	private boolean[]		spriteOpaque;
+	private int				opaqueCount;
 	private int 			spriteQueueCount;
 	private int 			spriteQueueArraySize;
 	private SpriteSortMode  spriteSortMode;
 	private boolean			beginEndPair;
 	
-	private float[] intermBuffer;
-	private int		intermCount;
+	// sorting, sprites are rendered through the sorted index permutation
+	private long[]			sortKeys;
+	private int[]			sortIndices;
+	private RadixSort		radixSort;
+	
+	// textures used by the queued sprites, sprites refer to these by slot
+	private Texture2D[]		textureTable;
+	private int[]			textureTableUnit;
+	private int				textureTableCount;
+	
+	// textures bound for the batch that is being build
+	private final int		textureUnits;
+	private Texture2D[]		batchTextures;
+	private int[]			batchTextureSlots;
+	private int				batchTextureCount;
+	private int[]			textureUnitValues;
+	
+	// counters to measure batching
+	private int				drawCallCount;
+	private int				singleTextureDrawCallCount;
+	
+	// culling, sprites outside the cull rectangle are not queued
+	private boolean			cullingEnabled;
+	private final Rectangle	viewportRectangle;
+	private final Rectangle	cullRectangle;
+	private Rectangle		activeCullRectangle;
+	private int				culledCount;
+	
+	// vertex data as 32 bit words, floats are stored with their raw bits
+	private final VertexFormat vertexFormat;
+	private final int 		vertexElements;
+	private int[] 			intermBuffer;
+	private VertexBuffer	cornerBuffer;
+	private long			vertexGenerationTime;
 	
-	private VertexBuffer 	vertexBuffer;
+	// optional workers generating vertices in parallel, the GL thread takes a slice as well
+	private VertexWorker[]	vertexWorkers;
+	private final Semaphore	vertexWorkersDone;
+	private int				parallelThreshold;
+	
+	private VertexBuffer[] 	vertexBuffers;
+	private int				currentVertexBuffer;
 	private IndexBuffer 	indexBuffer;
 	
-	private ShaderProgram 	spriteBatchProgram;
+	private Effect		 	defaultEffect;
+	private Effect			activeEffect;
 	private Mat4			transformMatrix;
+	private Mat4			activeTransform;
 	
-	// shader program locations
-	int matrixLocaton;
+	// shader program locations of the active effect
+	Effect.Parameter matrixParameter;
+	Effect.Parameter textureParameter;
 	int aPosition;
+	int aDepth;
 	int aColor;
 	int aTexCoord;
-	int uTexOne;
+	int aTexSlot;
+	int aDest;
+	int aTransform;
+	int aTexRect;
+	int aCorner;
 	
 	// initialize static fields
 	static
@@ -130,49 +273,119 @@ public class SpriteBatch
 	 */
 	public SpriteBatch(GraphicsSystem graphics)
 	{
-		// create the used shader program
-		spriteBatchProgram = new ShaderProgram();
+		this(graphics, VertexFormat.STANDARD);
+	}
+	
+	public SpriteBatch(GraphicsSystem graphics, VertexFormat format)
+	{
+		this(graphics, format, 1);
+	}
+	
+	/**
+	 * Creates a spritebatch that binds up to the given amount of textures at once
+	 * A batch is only broken when all texture units are in use instead of on every texture change.
+	 * @param textureUnits the amount of textures to bind at once, clamped to what the GPU supports
+	 */
+	public SpriteBatch(GraphicsSystem graphics, VertexFormat format, int textureUnits)
+	{
+		this.graphics = graphics;
+		
+		// clamp the texture units to what the GPU and our shader supports
+		int maxUnits = GetMaxTextureUnits();
+		if(textureUnits > maxUnits)
+			textureUnits = maxUnits;
+		
+		if(textureUnits < 1)
+			textureUnits = 1;
+		
+		this.textureUnits = textureUnits;
+		
+		// set the vertex layout, multi texturing adds a texture slot to the vertex
+		vertexFormat = format;
+		int elements;
+		switch(format)
+		{
+			case PACKED:
+				elements = PACKED_VERTEX_ELEMENTS;
+				break;
+			case EXPANDED:
+				elements = EXPANDED_VERTEX_ELEMENTS;
+				break;
+			default:
+				elements = VERTEX_ELEMENTS;
+				break;
+		}
+		vertexElements = elements + (textureUnits > 1 ? 1 : 0);
 		
-		// create program
-		if(!spriteBatchProgram.Create())
-			Log.d(LOG_TAG, "Could not create shaderProgram");
+		// create the used shader program
+		defaultEffect = new Effect(CreateVertexShader(), CreateFragmentShader());
+		UseEffect(defaultEffect);
 		
-		if(!spriteBatchProgram.LinkShaders(vShader, fShader))
-			Log.d(LOG_TAG, "Could not link shaderProgram");
+		// the samplers just use the unit of their index
+		textureUnitValues = new int[textureUnits];
+		for(int i = 0; i < textureUnits; i++)
+			textureUnitValues[i] = i;
 		
-		// set variable locations for shader
-		matrixLocaton = spriteBatchProgram.GetUniformLocation("uTransform");
-		aPosition = spriteBatchProgram.GetAttribLocation("a_position");
-		aColor = spriteBatchProgram.GetAttribLocation("a_color");
-		aTexCoord = spriteBatchProgram.GetAttribLocation("a_texcoord_one");
-		uTexOne = spriteBatchProgram.GetUniformLocation("u_texture_one");
+		batchTextures = new Texture2D[textureUnits];
+		batchTextureSlots = new int[textureUnits];
+		batchTextureCount = 0;
 		
-		// create buffers
-		vertexBuffer = new VertexBuffer(VERTEX_ELEMENTS * maxBatchSize * verticesPerSprite, false);
-		vertexBuffer.Create();
+		// create a ring of buffers so a chunk upload never waits on the GPU reading the previous chunk
+		vertexBuffers = new VertexBuffer[vertexBufferCount];
+		for(int i = 0; i < vertexBufferCount; i++)
+		{
+			vertexBuffers[i] = new VertexBuffer(vertexElements * maxBatchSize * verticesPerSprite, false);
+			vertexBuffers[i].Create();
+		}
+		currentVertexBuffer = 0;
 		
 		// generate indices
 		indexBuffer = new IndexBuffer(maxBatchSize * indicesPerSprite, true);
 		CreateIndexValues();
 		
+		// the expanded format gets its corners from a static buffer
+		cornerBuffer = null;
+		if(format == VertexFormat.EXPANDED)
+			CreateCornerValues();
+		
 		// create the transform matrix
 		transformMatrix = Mat4.CreateOrtho2D( (int)graphics.viewportNormal.width, (int)graphics.viewportNormal.height);
+		activeTransform = transformMatrix;
+		
+		// cull against the viewport by default
+		viewportRectangle = graphics.viewportNormal;
+		cullRectangle = new Rectangle(viewportRectangle);
+		activeCullRectangle = cullRectangle;
+		cullingEnabled = false;
+		culledCount = 0;
 		
 		// create the sprite queue
-		spriteInfoQueue = new SpriteInfo[initialQueueSize];
-		for(int i = 0; i < initialQueueSize; i++)
-		{
-			spriteInfoQueue[i] = new SpriteInfo();
-		}
+		spriteDestination = new float[initialQueueSize * 4];
+		spriteSource = new float[initialQueueSize * 4];
+		spriteColor = new float[initialQueueSize * 4];
+		spriteOriginRotationDepth = new float[initialQueueSize * 4];
+		spriteTextureSlot = new int[initialQueueSize];
+		spriteEffect = new int[initialQueueSize];
+		spriteOpaque = new boolean[initialQueueSize];
+		textureTable = new Texture2D[initialTextureTableSize];
+		textureTableUnit = new int[initialTextureTableSize];
+		textureTableCount = 0;
 		
 		spriteQueueArraySize = initialQueueSize;
 		spriteQueueCount = 0;
+		sortKeys = new long[initialQueueSize];
+		sortIndices = new int[initialQueueSize];
+		radixSort = new RadixSort(initialQueueSize);
 		beginEndPair = false;
 		spriteSortMode = SpriteSortMode.DEFERRED;
 		
-		// optimizations
-		intermBuffer = new float[verticesPerSprite * VERTEX_ELEMENTS * spriteQueueArraySize];
-		intermCount = 0;
+		// optimizations, the intermediate buffer holds one VBO sized chunk
+		intermBuffer = new int[verticesPerSprite * vertexElements * maxBatchSize];
+		
+		// vertices are generated on the GL thread only until asked otherwise
+		vertexWorkers = null;
+		vertexWorkersDone = new Semaphore(0);
+		parallelThreshold = defaultParallelThreshold;
 	}
 
 	/**
@@ -180,10 +393,274 @@ public class SpriteBatch
 	 */
 	public void Dispose()
 	{
-		spriteBatchProgram.Dispose();
-		vertexBuffer.Dispose();
+		defaultEffect.Dispose();
+		for(int i = 0; i < vertexBufferCount; i++)
+			vertexBuffers[i].Dispose();
 		indexBuffer.Dispose();
-		spriteInfoQueue = null;
+		if(cornerBuffer != null)
+			cornerBuffer.Dispose();
+		textureTable = null;
+		SetParallelVertexGeneration(0);
+	}
+	
+	/**
+	 * Generates the vertices of large batches on multiple threads
+	 * Each thread writes its own slice of the vertices, the GL thread is one of them
+	 * and uploads once all slices are done.
+	 * @param threadCount the total amount of threads to use, 1 or less disables parallel generation
+	 */
+	public void SetParallelVertexGeneration(int threadCount)
+	{
+		// stop the current workers
+		if(vertexWorkers != null)
+		{
+			for(int i = 0; i < vertexWorkers.length; i++)
+				vertexWorkers[i].Stop();
+			
+			vertexWorkers = null;
+		}
+		
+		if(threadCount <= 1)
+			return;
+		
+		vertexWorkers = new VertexWorker[threadCount - 1];
+		for(int i = 0; i < vertexWorkers.length; i++)
+		{
+			vertexWorkers[i] = new VertexWorker();
+			vertexWorkers[i].start();
+		}
+	}
+	
+	/**
+	 * Sets the amount of sprites a batch needs before its vertices are generated in parallel
+	 * Below this the cost of waking the workers is higher than what they save.
+	 */
+	public void SetParallelThreshold(int spriteCount)
+	{
+		parallelThreshold = spriteCount < 1 ? 1 : spriteCount;
+	}
+	
+	/**
+	 * Thread that generates the vertices for a slice of a batch when signaled
+	 */
+	private final class VertexWorker extends Thread
+	{
+		private final Semaphore start;
+		private volatile boolean running;
+		
+		// the slice to generate, set before signaling start
+		int sortedStart;
+		int count;
+		int bufferOffset;
+		
+		VertexWorker()
+		{
+			super("SpriteBatch vertex worker");
+			setDaemon(true);
+			start = new Semaphore(0);
+			running = true;
+		}
+		
+		void Generate(int sortedStart, int count, int bufferOffset)
+		{
+			this.sortedStart = sortedStart;
+			this.count = count;
+			this.bufferOffset = bufferOffset;
+			start.release();
+		}
+		
+		void Stop()
+		{
+			running = false;
+			start.release();
+		}
+		
+		@Override
+		public void run()
+		{
+			while(true)
+			{
+				start.acquireUninterruptibly();
+				if(!running)
+					return;
+				
+				GenerateVertices(sortedStart, count, bufferOffset);
+				vertexWorkersDone.release();
+			}
+		}
+	}
+	
+	/**
+	 * Creates an effect that uses the vertex shader of this spritebatch with a custom fragment shader
+	 * The fragment shader gets v_color and v_texcoord_one, and u_texture_one as sampler.
+	 * With multiple texture units it gets v_texslot and the u_textures sampler array instead.
+	 * @param fragmentShader the source of the fragment shader
+	 */
+	public Effect CreateEffect(String fragmentShader)
+	{
+		return new Effect(CreateVertexShader(), fragmentShader);
+	}
+	
+	/**
+	 * Makes an effect the active one and gets its locations
+	 * The locations are cached by the effect, so switching effects does not query GL
+	 */
+	private void UseEffect(Effect effect)
+	{
+		activeEffect = effect;
+		matrixParameter = effect.GetParameter("uTransform");
+		textureParameter = effect.GetParameter(textureUnits > 1 ? "u_textures" : "u_texture_one");
+		aPosition = effect.GetAttribLocation("a_position");
+		aDepth = effect.GetAttribLocation("a_depth");
+		aColor = effect.GetAttribLocation("a_color");
+		aTexCoord = effect.GetAttribLocation("a_texcoord_one");
+		aTexSlot = effect.GetAttribLocation("a_texslot");
+		aDest = effect.GetAttribLocation("a_dest");
+		aTransform = effect.GetAttribLocation("a_transform");
+		aTexRect = effect.GetAttribLocation("a_texrect");
+		aCorner = effect.GetAttribLocation("a_corner");
+	}
+	
+	/**
+	 * Gets the graphics system the states of this spritebatch are set through
+	 */
+	public GraphicsSystem GetGraphicsSystem()
+	{
+		return graphics;
+	}
+	
+	/**
+	 * Gets the amount of textures a spritebatch can bind at once on this GPU
+	 */
+	public static int GetMaxTextureUnits()
+	{
+		int[] units = new int[1];
+		glGetIntegerv(GL_MAX_TEXTURE_IMAGE_UNITS, units, 0);
+		
+		return units[0] < maxTextureUnits ? units[0] : maxTextureUnits;
+	}
+	
+	/**
+	 * Gets the amount of draw calls since the last counter reset
+	 */
+	public int GetDrawCallCount()
+	{
+		return drawCallCount;
+	}
+	
+	/**
+	 * Gets the amount of draw calls the same sprites would have needed
+	 * when breaking the batch on every texture change
+	 */
+	public int GetSingleTextureDrawCallCount()
+	{
+		return singleTextureDrawCallCount;
+	}
+	
+	/**
+	 * Gets the amount of culled sprites since the last counter reset
+	 */
+	public int GetCulledCount()
+	{
+		return culledCount;
+	}
+	
+	/**
+	 * Gets the CPU time spent on generating vertices since the last counter reset
+	 * @return the time in milliseconds
+	 */
+	public float GetVertexGenerationTime()
+	{
+		return vertexGenerationTime / 1000000.0f;
+	}
+	
+	/**
+	 * Resets the draw call, culling and timing counters, call this once per frame
+	 */
+	public void ResetCounters()
+	{
+		drawCallCount = 0;
+		singleTextureDrawCallCount = 0;
+		culledCount = 0;
+		vertexGenerationTime = 0;
+	}
+	
+	/**
+	 * Enables or disables culling of sprites outside the cull rectangle
+	 */
+	public void SetCulling(boolean enabled)
+	{
+		cullingEnabled = enabled;
+	}
+	
+	public boolean IsCulling()
+	{
+		return cullingEnabled;
+	}
+	
+	/**
+	 * Sets the rectangle sprites are culled against, like the visible area of a camera
+	 * @param rectangle the rectangle in the same space as the sprites, null resets it to the viewport
+	 */
+	public void SetCullRectangle(Rectangle rectangle)
+	{
+		if(rectangle == null)
+			cullRectangle.set(viewportRectangle);
+		else
+			cullRectangle.set(rectangle);
+	}
+	
+	/**
+	 * Checks if a sprite lies completely outside the cull rectangle
+	 * Rotated sprites are tested with their bounding circle around the origin
+	 */
+	private boolean IsCulled(float destX, float destY, float destWidth, float destHeight,
+			float originX, float originY, float rotation)
+	{
+		float left, top, right, bottom;
+		
+		if(rotation == 0.0f)
+		{
+			left = destX - originX;
+			top = destY - originY;
+			right = left + destWidth;
+			bottom = top + destHeight;
+		}
+		else
+		{
+			// the farthest corner from the origin gives the radius
+			float extentX = Math.max(Math.abs(originX), Math.abs(destWidth - originX));
+			float extentY = Math.max(Math.abs(originY), Math.abs(destHeight - originY));
+			float radius = (float) Math.sqrt(extentX * extentX + extentY * extentY);
+			
+			left = destX - radius;
+			top = destY - radius;
+			right = destX + radius;
+			bottom = destY + radius;
+		}
+		
+		Rectangle cull = activeCullRectangle;
+		return right < cull.x || left > cull.x + cull.width ||
+				bottom < cull.y || top > cull.y + cull.height;
+	}
+	
+	/**
+	 * The corners of the expanded format never change either,
+	 * each vertex gets its corner as 2 unsigned bytes
+	 */
+	private void CreateCornerValues()
+	{
+		int[] corners = new int[maxBatchSize * verticesPerSprite];
+		for(int i = 0; i < corners.length; i++)
+		{
+			Vec2 corner = cornerOffsets[i % verticesPerSprite];
+			corners[i] = ((int)corner.y << 8) | (int)corner.x;
+		}
+		
+		cornerBuffer = new VertexBuffer(corners.length, true);
+		cornerBuffer.Create();
+		cornerBuffer.SetData(0, corners, 0, corners.length);
+		cornerBuffer.Apply();
 	}
 	
 	/**
@@ -217,6 +694,28 @@ public class SpriteBatch
 	 * Start the spritebatch drawing
 	 */
 	public void Begin(SpriteSortMode sortMode, BlendState blendState)
+	{
+		Begin(sortMode, blendState, null);
+	}
+	
+	/**
+	 * Start the spritebatch drawing through a camera
+	 * Sprites are drawn in world space and culled against the visible rectangle of the camera.
+	 * @param camera the camera to draw with, null draws in screen space
+	 */
+	public void Begin(SpriteSortMode sortMode, BlendState blendState, Camera2D camera)
+	{
+		Begin(sortMode, blendState, camera, null);
+	}
+	
+	/**
+	 * Start the spritebatch drawing with a custom effect
+	 * The effect must use the same attribute names as the spritebatch shaders, 
+	 * the spritebatch sets uTransform and the texture sampler. Other parameters are set by the caller.
+	 * @param camera the camera to draw with, null draws in screen space
+	 * @param effect the effect to draw with, null uses the default effect
+	 */
+	public void Begin(SpriteSortMode sortMode, BlendState blendState, Camera2D camera, Effect effect)
 	{
 		// error check
 		if(beginEndPair)
@@ -229,6 +728,21 @@ public class SpriteBatch
 		currentBlendState = blendState;
 		spriteSortMode = sortMode;
 		
+		// set the effect
+		UseEffect(effect != null ? effect : defaultEffect);
+		
+		// set the camera
+		if(camera != null)
+		{
+			activeTransform = camera.GetTransform();
+			activeCullRectangle = camera.GetVisibleRectangle();
+		}
+		else
+		{
+			activeTransform = transformMatrix;
+			activeCullRectangle = cullRectangle;
+		}
+		
 		// set start batching
 		if(spriteSortMode == SpriteSortMode.IMMEDIATE)
 		{
@@ -282,60 +796,181 @@ public class SpriteBatch
 	private void GrowSpriteQueue() 
 	{
 		int newSize = this.spriteQueueArraySize * 2;
-		SpriteInfo[] newQueue = new SpriteInfo[newSize];
+		int count = this.spriteQueueCount;
 		
 		// copy old data over
-		for(int i = 0; i < this.spriteQueueCount; i++)
+		spriteDestination = GrowArray(spriteDestination, newSize * 4, count * 4);
+		spriteSource = GrowArray(spriteSource, newSize * 4, count * 4);
+		spriteColor = GrowArray(spriteColor, newSize * 4, count * 4);
+		spriteOriginRotationDepth = GrowArray(spriteOriginRotationDepth, newSize * 4, count * 4);
+		spriteTextureSlot = GrowArray(spriteTextureSlot, newSize, count);
+		spriteEffect = GrowArray(spriteEffect, newSize, count);
+		spriteOpaque = GrowArray(spriteOpaque, newSize, count);
+		
+		this.spriteQueueArraySize = newSize;
+		
+		// the sort arrays are rebuild on every flush, so no need to copy
+		this.sortKeys = new long[newSize];
+		this.sortIndices = new int[newSize];
+	}
+	
+	/**
+	 * Copies the used part of an array into a new bigger array
+	 */
+	private static float[] GrowArray(float[] array, int newSize, int used)
+	{
+		float[] newArray = new float[newSize];
+		System.arraycopy(array, 0, newArray, 0, used);
+		return newArray;
+	}
+	
+	/**
+	 * Copies the used part of an array into a new bigger array
+	 */
+	private static int[] GrowArray(int[] array, int newSize, int used)
+	{
+		int[] newArray = new int[newSize];
+		System.arraycopy(array, 0, newArray, 0, used);
+		return newArray;
+	}
+	
+	private static boolean[] GrowArray(boolean[] array, int newSize, int used)
+	{
+		boolean[] newArray = new boolean[newSize];
+		System.arraycopy(array, 0, newArray, 0, used);
+		return newArray;
+	}
+	
+	/**
+	 * Snaps a vertex position to a whole pixel
+	 * Rounds down like floor in the expanded vertex shader, so negative positions
+	 * end up on the same pixel whatever the vertex format is.
+	 */
+	static float SnapToPixel(float value)
+	{
+		int snapped = (int)value;
+		return value < snapped ? snapped - 1 : snapped;
+	}
+	
+	/**
+	 * Grows the texture unit table, the units of the used slots are kept
+	 * and the new slots are marked as not bound with -1
+	 */
+	static int[] GrowTextureUnits(int[] units, int newSize, int used)
+	{
+		int[] newUnits = new int[newSize];
+		System.arraycopy(units, 0, newUnits, 0, used);
+		for(int i = used; i < newSize; i++)
+			newUnits[i] = -1;
+		
+		return newUnits;
+	}
+	
+	/**
+	 * Gets the slot of a texture in the texture table, adds it when not yet present
+	 * @param texture the texture to look up
+	 * @return the slot of the texture
+	 */
+	private int GetTextureSlot(Texture2D texture)
+	{
+		Texture2D[] table = textureTable;
+		int count = textureTableCount;
+		
+		// search backwards, the last used texture is the most likely one
+		for(int i = count - 1; i >= 0; i--)
 		{
-			newQueue[i] = this.spriteInfoQueue[i];
+			if(table[i] == texture)
+				return i;
 		}
 		
-		// initialize new spriteinfo if needed
-		for(int i = this.spriteQueueCount; i < newSize; i++)
+		// add the texture
+		if(count >= table.length)
 		{
-			// init new sprite info
-			newQueue[i] = new SpriteInfo();
+			Texture2D[] newTable = new Texture2D[table.length * 2];
+			System.arraycopy(table, 0, newTable, 0, count);
+			textureTable = table = newTable;
+			textureTableUnit = GrowTextureUnits(textureTableUnit, table.length, count);
 		}
 		
-		this.spriteInfoQueue = newQueue;
-		this.spriteQueueArraySize = newSize;
+		table[count] = texture;
+		textureTableUnit[count] = -1;
+		textureTableCount = count + 1;
+		return count;
 	}
 	
 	/**
-	 * Grows the intermediate buffe when needed
+	 * Clears the texture table so it does not keep textures alive
 	 */
-	private void GrowIntermBuffer()
+	private void ClearTextureTable()
 	{
-		int newSize = this.spriteQueueArraySize * 2;
-		float[] newBuffer = new float[newSize * verticesPerSprite * VERTEX_ELEMENTS];
-		
-		// copy old data over
-		for(int i = 0; i < this.intermCount; i++)
-		{
-			newBuffer[i] = this.intermBuffer[i];
-		}
+		for(int i = 0; i < textureTableCount; i++)
+			textureTable[i] = null;
 		
-		this.intermBuffer = newBuffer;
+		textureTableCount = 0;
 	}
 	
 	/**
 	 * Sort the queue based on the sprite sort mode
+	 * Fills the sort indices with the order the sprites have to be rendered in
 	 */
-	@SuppressWarnings({ "unused", "incomplete-switch" })
 	private void SortSprites() 
 	{
+		int[] textureSlots = spriteTextureSlot;
+		float[] originRotationDepth = spriteOriginRotationDepth;
+		long[] keys = sortKeys;
+		int[] indices = sortIndices;
+		int count = spriteQueueCount;
+		
+		// keys pack the texture slot and depth, the primary sort field goes in the upper 32 bits
 		switch(spriteSortMode)
 		{
 			case TEXTURE:
-				Arrays.sort(spriteInfoQueue, 0, spriteQueueCount, this.TexComp);
+				for(int i = 0; i < count; i++)
+				{
+					keys[i] = ((long)textureSlots[i] << 32) | RadixSort.FloatToKey(originRotationDepth[i * 4 + 3]);
+					indices[i] = i;
+				}
 				break;
 			case BACKTOFRONT:
-				Arrays.sort(spriteInfoQueue, 0, spriteQueueCount, this.BackFrontComp);
+				for(int i = 0; i < count; i++)
+				{
+					keys[i] = (RadixSort.FloatToKey(originRotationDepth[i * 4 + 3]) << 32) | textureSlots[i];
+					indices[i] = i;
+				}
 				break;
 			case FRONTTOBACK:
-				Arrays.sort(spriteInfoQueue, 0, spriteQueueCount, this.FrontBackComp);
+				for(int i = 0; i < count; i++)
+				{
+					keys[i] = (RadixSort.FloatToKey(-originRotationDepth[i * 4 + 3]) << 32) | textureSlots[i];
+					indices[i] = i;
+				}
 				break;
+			case DEPTHTESTED:
+				// opaque sprites first front to back, translucent sprites after them back to front
+				// equal depths keep the submission order so overlapping sprites stay correct
+				boolean[] opaque = spriteOpaque;
+				opaqueCount = 0;
+				for(int i = 0; i < count; i++)
+				{
+					if(opaque[i])
+					{
+						keys[i] = RadixSort.FloatToKey(-originRotationDepth[i * 4 + 3]);
+						opaqueCount++;
+					}
+					else
+						keys[i] = (1L << 32) | RadixSort.FloatToKey(originRotationDepth[i * 4 + 3]);
+					
+					indices[i] = i;
+				}
+				break;
+			default:
+				// keep the submission order
+				for(int i = 0; i < count; i++)
+					indices[i] = i;
+				return;
 		}
+		
+		radixSort.Sort(keys, indices, count);
 	}
 	
 	/**
@@ -343,23 +978,20 @@ public class SpriteBatch
 	 */
 	private void PrepareForRendering() 
 	{
-		// set the shader program
-		spriteBatchProgram.Bind();
-		spriteBatchProgram.SetUniform(matrixLocaton, transformMatrix.elements);
-		spriteBatchProgram.SetUniform(uTexOne, 0);
+		// set the shader program, uniforms are only send when they changed
+		matrixParameter.SetValue(activeTransform.elements);
+		if(textureUnits > 1)
+			textureParameter.SetValue(textureUnitValues);
+		else
+			textureParameter.SetValue(0);
 		
-		// set the vertex buffer and attribute pointers
-		vertexBuffer.Bind();
-		int bytesPerVertex = VERTEX_ELEMENTS * BYTES_PER_FLOAT;
-		vertexBuffer.SetVertexAttribPointer(0 * BYTES_PER_FLOAT, aPosition, 3, bytesPerVertex);
-		vertexBuffer.SetVertexAttribPointer(3 * BYTES_PER_FLOAT, aColor, 4, bytesPerVertex);
-		vertexBuffer.SetVertexAttribPointer(7 * BYTES_PER_FLOAT, aTexCoord, 2, bytesPerVertex);
+		activeEffect.Apply();
 		
 		// set indexbuffer
 		indexBuffer.Bind();
 		
 		// set graphic states
-		currentBlendState.SetState();
+		graphics.SetBlendingState(currentBlendState);
 	}
 	
 	/**
@@ -371,94 +1003,321 @@ public class SpriteBatch
 			return;
 		
 		// sort the sprites
-		//SortSprites();
+		long sortStart = System.nanoTime();
+		SortSprites();
+		RenderStats.Add(Stat.SORT_TIME, System.nanoTime() - sortStart);
 		
-		// used vars
-		Texture2D batchTexture = null;
-		Texture2D spriteTexture = null;
-		SpriteInfo[] localSpriteQueue = spriteInfoQueue;
-		int batchStart = 0;
-		
-		// iterate all sprites
-		for(int pos = 0; pos < spriteQueueCount; pos++)
+		if(spriteSortMode == SpriteSortMode.DEPTHTESTED)
 		{
-			spriteTexture = localSpriteQueue[pos].texture;
+			// opaque pass, hidden pixels of later sprites get rejected by the depth test
+			graphics.SetBlendingState(BlendState.Opaque);
+			graphics.SetDepthStencilState(DepthStencilState.Default);
+			FlushRange(0, opaqueCount);
 			
-			// if the textures are not the same we will draw a batch
-			if(spriteTexture.compareTo(batchTexture) != 0)
-			{
-				// only if the pos is higher than batch start we will draw
-				if(pos > batchStart)
-				{
-					RenderBatch(batchTexture, batchStart, pos - batchStart);
-				}
-				
-				batchTexture = spriteTexture;
-				batchStart = pos;
-			}
+			// translucent pass
+			graphics.SetBlendingState(currentBlendState);
+			graphics.SetDepthStencilState(DepthStencilState.DepthRead);
+			FlushRange(opaqueCount, spriteQueueCount);
+			
+			graphics.SetDepthStencilState(DepthStencilState.None);
 		}
-		
-		// render final batch
-		RenderBatch(batchTexture, batchStart, spriteQueueCount - batchStart);
+		else
+			FlushRange(0, spriteQueueCount);
 		
 		// reset queue
 		spriteQueueCount = 0;
+		ClearTextureTable();
 	}
 	
 	/**
-	 * Render a batch
-	 * @param tex the texture to batch with
-	 * @param spriteBatchStart where to start batching from
+	 * Renders a range of the sorted sprites in as few batches as possible
+	 * @param start the first sprite in the sorted order
+	 * @param end the end of the range, exclusive
+	 */
+	private void FlushRange(int start, int end)
+	{
+		if(end <= start)
+			return;
+		
+		// used vars
+		int spriteSlot = -1;
+		int prevSlot = -1;
+		int runStart = start;
+		int[] textureSlots = spriteTextureSlot;
+		int[] slotUnits = textureTableUnit;
+		int[] indices = sortIndices;
+		int batchStart = start;
+		
+		// iterate all sprites
+		for(int pos = start; pos < end; pos++)
+		{
+			spriteSlot = textureSlots[indices[pos]];
+			
+			// count the texture runs for comparison with single texture batching
+			if(spriteSlot != prevSlot)
+			{
+				if(pos > runStart)
+					singleTextureDrawCallCount += (pos - runStart + maxBatchSize - 1) / maxBatchSize;
+				
+				prevSlot = spriteSlot;
+				runStart = pos;
+			}
+			
+			// check if the texture is already bound for this batch
+			if(slotUnits[spriteSlot] >= 0)
+				continue;
+			
+			// if all texture units are in use we will draw a batch
+			if(batchTextureCount >= textureUnits)
+			{
+				RenderBatch(batchStart, pos - batchStart);
+				batchStart = pos;
+			}
+			
+			// bind the texture to a free unit for this batch
+			slotUnits[spriteSlot] = batchTextureCount;
+			batchTextureSlots[batchTextureCount] = spriteSlot;
+			batchTextures[batchTextureCount++] = textureTable[spriteSlot];
+		}
+		
+		// render final batch
+		singleTextureDrawCallCount += (end - runStart + maxBatchSize - 1) / maxBatchSize;
+		RenderBatch(batchStart, end - batchStart);
+	}
+	
+	/**
+	 * Binds the next vertex buffer of the ring and sets its attribute pointers
+	 * @return the vertex buffer to upload the next chunk into
+	 */
+	private VertexBuffer NextVertexBuffer()
+	{
+		currentVertexBuffer = (currentVertexBuffer + 1) % vertexBufferCount;
+		VertexBuffer buffer = vertexBuffers[currentVertexBuffer];
+		
+		// attribute pointers are bound to the current buffer, so set them again
+		int bytesPerVertex = vertexElements * BYTES_PER_FLOAT;
+		if(vertexFormat == VertexFormat.EXPANDED)
+		{
+			cornerBuffer.Bind();
+			cornerBuffer.SetVertexAttribPointer(0, aCorner, 2, GL_UNSIGNED_BYTE, false, BYTES_PER_FLOAT);
+			
+			buffer.Bind();
+			buffer.SetVertexAttribPointer(0 * BYTES_PER_FLOAT, aDest, 4, bytesPerVertex);
+			buffer.SetVertexAttribPointer(4 * BYTES_PER_FLOAT, aTransform, 4, bytesPerVertex);
+			buffer.SetVertexAttribPointer(8 * BYTES_PER_FLOAT, aTexRect, 4, GL_UNSIGNED_SHORT, true, bytesPerVertex);
+			buffer.SetVertexAttribPointer(10 * BYTES_PER_FLOAT, aColor, 4, GL_UNSIGNED_BYTE, true, bytesPerVertex);
+		}
+		else if(vertexFormat == VertexFormat.PACKED)
+		{
+			buffer.Bind();
+			buffer.SetVertexAttribPointer(0 * BYTES_PER_FLOAT, aPosition, 2, GL_FLOAT, false, bytesPerVertex);
+			buffer.SetVertexAttribPointer(2 * BYTES_PER_FLOAT, aDepth, 1, GL_FLOAT, false, bytesPerVertex);
+			buffer.SetVertexAttribPointer(3 * BYTES_PER_FLOAT, aColor, 4, GL_UNSIGNED_BYTE, true, bytesPerVertex);
+			buffer.SetVertexAttribPointer(4 * BYTES_PER_FLOAT, aTexCoord, 2, GL_UNSIGNED_SHORT, true, bytesPerVertex);
+		}
+		else
+		{
+			buffer.Bind();
+			buffer.SetVertexAttribPointer(0 * BYTES_PER_FLOAT, aPosition, 3, bytesPerVertex);
+			buffer.SetVertexAttribPointer(3 * BYTES_PER_FLOAT, aColor, 4, bytesPerVertex);
+			buffer.SetVertexAttribPointer(7 * BYTES_PER_FLOAT, aTexCoord, 2, bytesPerVertex);
+		}
+		
+		// the texture slot is the last element of the vertex
+		if(textureUnits > 1)
+		{
+			int slotOffset = (vertexElements - 1) * BYTES_PER_FLOAT;
+			if(vertexFormat != VertexFormat.STANDARD)
+				buffer.SetVertexAttribPointer(slotOffset, aTexSlot, 1, GL_UNSIGNED_BYTE, false, bytesPerVertex);
+			else
+				buffer.SetVertexAttribPointer(slotOffset, aTexSlot, 1, bytesPerVertex);
+		}
+		
+		return buffer;
+	}
+	
+	/**
+	 * Render a batch with the batch textures, split up in chunks that fit in a single vertex buffer
+	 * Releases the batch textures afterwards
+	 * @param spriteBatchStart where to start batching from in the sorted order
 	 * @param count the amount of sprites to draw
 	 */
-	private void RenderBatch(Texture2D tex, int spriteBatchStart, int count)
+	private void RenderBatch(int spriteBatchStart, int count)
 	{
-		// bind the texture
-		tex.Bind(0);
-		int spriteCount = count;
+		int spriteElements = verticesPerSprite * vertexElements;
+		
+		// bind the textures
+		for(int i = 0; i < batchTextureCount; i++)
+			batchTextures[i].Bind(i);
 		
 		// iterate all sprites
 		while(count > 0)
 		{
-			int batchSize = count;
+			// generate the whole batch at once in parallel, or a single chunk on this thread
+			int generateCount;
+			long generateStart = System.nanoTime();
+			if(vertexWorkers != null && count >= parallelThreshold)
+			{
+				generateCount = count;
+				if(generateCount * spriteElements > intermBuffer.length)
+					intermBuffer = new int[generateCount * spriteElements];
+				
+				GenerateVerticesParallel(spriteBatchStart, generateCount);
+			}
+			else
+			{
+				generateCount = count > maxBatchSize ? maxBatchSize : count;
+				GenerateVertices(spriteBatchStart, generateCount, 0);
+			}
+			long generateTime = System.nanoTime() - generateStart;
+			vertexGenerationTime += generateTime;
+			RenderStats.Add(Stat.VERTEX_TIME, generateTime);
+			RenderStats.Add(Stat.SPRITES, generateCount);
 			
-			// int remainingSpace
-			// check if we have room for all the sprites we want to draw
+			count -= generateCount;
+			spriteBatchStart += generateCount;
 			
-			// generate sprite vertex data
-			for(int i = 0; i < batchSize; i++)
+			// upload and draw in chunks that fit in a single vertex buffer
+			int bufferOffset = 0;
+			while(generateCount > 0)
 			{
-				RenderSprite(spriteInfoQueue[ spriteBatchStart + i], verticesPerSprite * VERTEX_ELEMENTS * i );
+				int batchSize = generateCount > maxBatchSize ? maxBatchSize : generateCount;
+				
+				// upload data to the GPU
+				VertexBuffer vertexBuffer = NextVertexBuffer();
+				vertexBuffer.SetData(0, intermBuffer, bufferOffset, batchSize * spriteElements);
+				vertexBuffer.Apply();
+				
+				// draw the sprites
+				glDrawElements(GL_TRIANGLES, batchSize * indicesPerSprite, GL_UNSIGNED_SHORT, 0);
+				RenderStats.Increment(Stat.DRAW_CALLS);
+				drawCallCount++;
+				
+				generateCount -= batchSize;
+				bufferOffset += batchSize * spriteElements;
 			}
-			
-			count -= batchSize;
-			spriteBatchStart += batchSize;
 		}
 		
-		// upload data to the GPU
-		vertexBuffer.SetData(0, intermBuffer, 0, intermCount);
-		vertexBuffer.Apply();
-		intermCount = 0;
+		// release the texture units
+		for(int i = 0; i < batchTextureCount; i++)
+			textureTableUnit[batchTextureSlots[i]] = -1;
+		
+		batchTextureCount = 0;
+	}
+	
+	/**
+	 * Generate the vertices for a range of sprites in the sorted order
+	 * @param sortedStart the first sprite in the sorted order
+	 * @param count the amount of sprites
+	 * @param bufferOffset where to start putting the data in the intermediate buffer
+	 */
+	private void GenerateVertices(int sortedStart, int count, int bufferOffset)
+	{
+		int[] indices = sortIndices;
+		int spriteElements = verticesPerSprite * vertexElements;
+		
+		for(int i = 0; i < count; i++)
+		{
+			RenderSprite(indices[sortedStart + i], bufferOffset + spriteElements * i);
+		}
+	}
+	
+	/**
+	 * Splits a range of sprites over the workers and this thread
+	 * Returns when all slices are generated
+	 */
+	private void GenerateVerticesParallel(int sortedStart, int count)
+	{
+		VertexWorker[] workers = vertexWorkers;
+		int spriteElements = verticesPerSprite * vertexElements;
+		int sliceSize = (count + workers.length) / (workers.length + 1);
+		int signaled = 0;
+		
+		// hand out the first slices to the workers
+		int first = 0;
+		for(int i = 0; i < workers.length && first < count; i++)
+		{
+			int sliceCount = Math.min(sliceSize, count - first);
+			workers[i].Generate(sortedStart + first, sliceCount, first * spriteElements);
+			signaled++;
+			first += sliceCount;
+		}
+		
+		// the remainder is generated here
+		GenerateVertices(sortedStart + first, count - first, first * spriteElements);
 		
-		// draw the sprites
-		glDrawElements(GL_TRIANGLES, spriteCount * indicesPerSprite, GL_UNSIGNED_SHORT, 0);
+		// wait for the workers before the buffer gets uploaded
+		vertexWorkersDone.acquireUninterruptibly(signaled);
 	}
 	
 	/**
 	 * Generate the vertex attributes from sprite data
 	 * and put these in the vertexbuffer
-	 * @param sprite the sprite to add to the vertexbuffer
+	 * Only writes to its own part of the buffer, so sprites can be generated from multiple threads
+	 * @param sprite the index of the sprite in the queue to add to the vertexbuffer
 	 * @param vertBuffOffset where to start putting the data in the vertexbuffer
 	 */
-	private void RenderSprite(SpriteInfo sprite, int vertBuffOffset)
+	private void RenderSprite(int sprite, int vertBuffOffset)
 	{		
 		// used variables
 		int buffOffset = 0;
+		int spriteOffset = sprite * 4;
+		
+		// the expanded format only needs the sprite record
+		if(vertexFormat == VertexFormat.EXPANDED)
+		{
+			RenderSpriteRecord(sprite, vertBuffOffset);
+			return;
+		}
+		
+		// unrotated and unflipped sprites have their own emitter
+		if(spriteOriginRotationDepth[spriteOffset + 2] == 0.0f && spriteEffect[sprite] == 0)
+		{
+			RenderSpriteAxisAligned(sprite, vertBuffOffset);
+			return;
+		}
+		
 		float x, y, posX, posY;
 		float cos = 1.0f;
 		float sin = 0.0f;
-		float rotation = sprite.originRotationDepth.z;
-		int effect = sprite.spriteEffect.ordinal();
+		
+		// read the sprite data
+		float destX = spriteDestination[spriteOffset];
+		float destY = spriteDestination[spriteOffset + 1];
+		float destWidth = spriteDestination[spriteOffset + 2];
+		float destHeight = spriteDestination[spriteOffset + 3];
+		
+		float sourceX = spriteSource[spriteOffset];
+		float sourceY = spriteSource[spriteOffset + 1];
+		float sourceWidth = spriteSource[spriteOffset + 2];
+		float sourceHeight = spriteSource[spriteOffset + 3];
+		
+		float r = spriteColor[spriteOffset];
+		float g = spriteColor[spriteOffset + 1];
+		float b = spriteColor[spriteOffset + 2];
+		float a = spriteColor[spriteOffset + 3];
+		
+		float originX = spriteOriginRotationDepth[spriteOffset];
+		float originY = spriteOriginRotationDepth[spriteOffset + 1];
+		float rotation = spriteOriginRotationDepth[spriteOffset + 2];
+		float depth = spriteOriginRotationDepth[spriteOffset + 3];
+		
+		int effect = spriteEffect[sprite];
+		int unit = textureTableUnit[spriteTextureSlot[sprite]];
+		
+		// data shared by all vertices as raw bits
+		int[] buffer = intermBuffer;
+		int elements = vertexElements;
+		boolean packed = (vertexFormat == VertexFormat.PACKED);
+		boolean multiTexture = (textureUnits > 1);
+		int slotOffset = elements - 1;
+		int slotBits = packed ? unit : Float.floatToRawIntBits(unit);
+		int depthBits = Float.floatToRawIntBits(depth);
+		int packedColor = packed ? PackColor(r, g, b, a) : 0;
+		int rBits = Float.floatToRawIntBits(r);
+		int gBits = Float.floatToRawIntBits(g);
+		int bBits = Float.floatToRawIntBits(b);
+		int aBits = Float.floatToRawIntBits(a);
 		
 		// rotate sprite
 		if(rotation != 0.0f)
@@ -470,33 +1329,194 @@ public class SpriteBatch
 		// put all vertices attributes in the buffer
 		for(int i = 0; i < verticesPerSprite; i++)
 		{
-			buffOffset = vertBuffOffset + VERTEX_ELEMENTS * i;
+			buffOffset = vertBuffOffset + elements * i;
 			
 			// scale and offset
-			x = cornerOffsets[i].x * sprite.destination.width - sprite.originRotationDepth.x;
-			y = cornerOffsets[i].y * sprite.destination.height - sprite.originRotationDepth.y;
+			x = cornerOffsets[i].x * destWidth - originX;
+			y = cornerOffsets[i].y * destHeight - originY;
 			
 			// rotate the created points
 			posX = x * cos - y * sin;
 			posY = x * sin + y * cos;
 			
 			// set the position and depth in a temp buffer
-			intermBuffer[buffOffset] 	 = (int)(posX + sprite.destination.x);
-			intermBuffer[buffOffset + 1] = (int)(posY + sprite.destination.y);
-			intermBuffer[buffOffset + 2] = sprite.originRotationDepth.w;
-
-			// colors
-			intermBuffer[buffOffset + 3] = sprite.color.r;
-			intermBuffer[buffOffset + 4] = sprite.color.g;
-			intermBuffer[buffOffset + 5] = sprite.color.b;
-			intermBuffer[buffOffset + 6] = sprite.color.a;
+			buffer[buffOffset] 	 = Float.floatToRawIntBits(SnapToPixel(posX + destX));
+			buffer[buffOffset + 1] = Float.floatToRawIntBits(SnapToPixel(posY + destY));
+			buffer[buffOffset + 2] = depthBits;
 			
 			// texture coordinates
-			intermBuffer[buffOffset + 7] = cornerOffsets[i ^ effect].x * sprite.source.width + sprite.source.x;
-			intermBuffer[buffOffset + 8] = cornerOffsets[i ^ effect].y * sprite.source.height + sprite.source.y;
+			float u = cornerOffsets[i ^ effect].x * sourceWidth + sourceX;
+			float v = cornerOffsets[i ^ effect].y * sourceHeight + sourceY;
+			
+			if(packed)
+			{
+				// color and normalized texture coordinates
+				buffer[buffOffset + 3] = packedColor;
+				buffer[buffOffset + 4] = ((int)(v * 65535.0f + 0.5f) << 16) | ((int)(u * 65535.0f + 0.5f) & 0xFFFF);
+			}
+			else
+			{
+				// colors
+				buffer[buffOffset + 3] = rBits;
+				buffer[buffOffset + 4] = gBits;
+				buffer[buffOffset + 5] = bBits;
+				buffer[buffOffset + 6] = aBits;
+				
+				// texture coordinates
+				buffer[buffOffset + 7] = Float.floatToRawIntBits(u);
+				buffer[buffOffset + 8] = Float.floatToRawIntBits(v);
+			}
+			
+			// texture unit to sample from
+			if(multiTexture)
+				buffer[buffOffset + slotOffset] = slotBits;
+		}
+	}
+	
+	/**
+	 * Puts the sprite record in every vertex of the sprite for the expanded format
+	 * The vertex shader does the corner and rotation math.
+	 * @param sprite the index of the sprite in the queue to add to the vertexbuffer
+	 * @param vertBuffOffset where to start putting the data in the vertexbuffer
+	 */
+	private void RenderSpriteRecord(int sprite, int vertBuffOffset)
+	{
+		int spriteOffset = sprite * 4;
+		int[] buffer = intermBuffer;
+		int o = vertBuffOffset;
+		int e = vertexElements;
+		
+		// flipping swaps the edges of the uv rectangle
+		int effect = spriteEffect[sprite];
+		float sourceX = spriteSource[spriteOffset];
+		float sourceY = spriteSource[spriteOffset + 1];
+		float sourceRight = sourceX + spriteSource[spriteOffset + 2];
+		float sourceBottom = sourceY + spriteSource[spriteOffset + 3];
+		int u0 = (int)(sourceX * 65535.0f + 0.5f) & 0xFFFF;
+		int u1 = (int)(sourceRight * 65535.0f + 0.5f) & 0xFFFF;
+		int v0 = (int)(sourceY * 65535.0f + 0.5f) << 16;
+		int v1 = (int)(sourceBottom * 65535.0f + 0.5f) << 16;
+		int texTopLeft = ((effect & 2) != 0 ? v1 : v0) | ((effect & 1) != 0 ? u1 : u0);
+		int texBottomRight = ((effect & 2) != 0 ? v0 : v1) | ((effect & 1) != 0 ? u0 : u1);
+		
+		// write the record once
+		buffer[o] = Float.floatToRawIntBits(spriteDestination[spriteOffset]);
+		buffer[o + 1] = Float.floatToRawIntBits(spriteDestination[spriteOffset + 1]);
+		buffer[o + 2] = Float.floatToRawIntBits(spriteDestination[spriteOffset + 2]);
+		buffer[o + 3] = Float.floatToRawIntBits(spriteDestination[spriteOffset + 3]);
+		buffer[o + 4] = Float.floatToRawIntBits(spriteOriginRotationDepth[spriteOffset]);
+		buffer[o + 5] = Float.floatToRawIntBits(spriteOriginRotationDepth[spriteOffset + 1]);
+		buffer[o + 6] = Float.floatToRawIntBits(spriteOriginRotationDepth[spriteOffset + 2] * RuneMath.TORAD);
+		buffer[o + 7] = Float.floatToRawIntBits(spriteOriginRotationDepth[spriteOffset + 3]);
+		buffer[o + 8] = texTopLeft;
+		buffer[o + 9] = texBottomRight;
+		buffer[o + 10] = PackColor(spriteColor[spriteOffset], spriteColor[spriteOffset + 1], 
+				spriteColor[spriteOffset + 2], spriteColor[spriteOffset + 3]);
+		
+		if(textureUnits > 1)
+			buffer[o + e - 1] = textureTableUnit[spriteTextureSlot[sprite]];
+		
+		// there is no instancing, so every corner gets a copy
+		System.arraycopy(buffer, o, buffer, o + e, e);
+		System.arraycopy(buffer, o, buffer, o + e * 2, e);
+		System.arraycopy(buffer, o, buffer, o + e * 3, e);
+	}
+	
+	/**
+	 * Generate the vertex attributes for a sprite without rotation and effect
+	 * Writes the corners directly instead of transforming them in a loop
+	 * @param sprite the index of the sprite in the queue to add to the vertexbuffer
+	 * @param vertBuffOffset where to start putting the data in the vertexbuffer
+	 */
+	private void RenderSpriteAxisAligned(int sprite, int vertBuffOffset)
+	{
+		int spriteOffset = sprite * 4;
+		int[] buffer = intermBuffer;
+		int o = vertBuffOffset;
+		
+		// corner positions
+		float left = spriteDestination[spriteOffset] - spriteOriginRotationDepth[spriteOffset];
+		float top = spriteDestination[spriteOffset + 1] - spriteOriginRotationDepth[spriteOffset + 1];
+		int x0 = Float.floatToRawIntBits(SnapToPixel(left));
+		int y0 = Float.floatToRawIntBits(SnapToPixel(top));
+		int x1 = Float.floatToRawIntBits(SnapToPixel(left + spriteDestination[spriteOffset + 2]));
+		int y1 = Float.floatToRawIntBits(SnapToPixel(top + spriteDestination[spriteOffset + 3]));
+		int depth = Float.floatToRawIntBits(spriteOriginRotationDepth[spriteOffset + 3]);
+		
+		// texture coordinates
+		float sourceX = spriteSource[spriteOffset];
+		float sourceY = spriteSource[spriteOffset + 1];
+		float sourceRight = sourceX + spriteSource[spriteOffset + 2];
+		float sourceBottom = sourceY + spriteSource[spriteOffset + 3];
+		
+		if(vertexFormat == VertexFormat.PACKED)
+		{
+			int color = PackColor(spriteColor[spriteOffset], spriteColor[spriteOffset + 1], 
+					spriteColor[spriteOffset + 2], spriteColor[spriteOffset + 3]);
+			int u0 = (int)(sourceX * 65535.0f + 0.5f) & 0xFFFF;
+			int u1 = (int)(sourceRight * 65535.0f + 0.5f) & 0xFFFF;
+			int v0 = (int)(sourceY * 65535.0f + 0.5f) << 16;
+			int v1 = (int)(sourceBottom * 65535.0f + 0.5f) << 16;
+			int e = vertexElements;
+			
+			buffer[o] = x0; buffer[o + 1] = y0; buffer[o + 2] = depth; buffer[o + 3] = color; buffer[o + 4] = v0 | u0;
+			o += e;
+			buffer[o] = x1; buffer[o + 1] = y0; buffer[o + 2] = depth; buffer[o + 3] = color; buffer[o + 4] = v0 | u1;
+			o += e;
+			buffer[o] = x0; buffer[o + 1] = y1; buffer[o + 2] = depth; buffer[o + 3] = color; buffer[o + 4] = v1 | u0;
+			o += e;
+			buffer[o] = x1; buffer[o + 1] = y1; buffer[o + 2] = depth; buffer[o + 3] = color; buffer[o + 4] = v1 | u1;
+		}
+		else
+		{
+			int r = Float.floatToRawIntBits(spriteColor[spriteOffset]);
+			int g = Float.floatToRawIntBits(spriteColor[spriteOffset + 1]);
+			int b = Float.floatToRawIntBits(spriteColor[spriteOffset + 2]);
+			int a = Float.floatToRawIntBits(spriteColor[spriteOffset + 3]);
+			int u0 = Float.floatToRawIntBits(sourceX);
+			int u1 = Float.floatToRawIntBits(sourceRight);
+			int v0 = Float.floatToRawIntBits(sourceY);
+			int v1 = Float.floatToRawIntBits(sourceBottom);
+			int e = vertexElements;
 			
-			intermCount += VERTEX_ELEMENTS; 
+			buffer[o] = x0; buffer[o + 1] = y0; buffer[o + 2] = depth;
+			buffer[o + 3] = r; buffer[o + 4] = g; buffer[o + 5] = b; buffer[o + 6] = a;
+			buffer[o + 7] = u0; buffer[o + 8] = v0;
+			o += e;
+			buffer[o] = x1; buffer[o + 1] = y0; buffer[o + 2] = depth;
+			buffer[o + 3] = r; buffer[o + 4] = g; buffer[o + 5] = b; buffer[o + 6] = a;
+			buffer[o + 7] = u1; buffer[o + 8] = v0;
+			o += e;
+			buffer[o] = x0; buffer[o + 1] = y1; buffer[o + 2] = depth;
+			buffer[o + 3] = r; buffer[o + 4] = g; buffer[o + 5] = b; buffer[o + 6] = a;
+			buffer[o + 7] = u0; buffer[o + 8] = v1;
+			o += e;
+			buffer[o] = x1; buffer[o + 1] = y1; buffer[o + 2] = depth;
+			buffer[o + 3] = r; buffer[o + 4] = g; buffer[o + 5] = b; buffer[o + 6] = a;
+			buffer[o + 7] = u1; buffer[o + 8] = v1;
 		}
+		
+		// texture unit to sample from, the last element of each vertex
+		if(textureUnits > 1)
+		{
+			int unit = textureTableUnit[spriteTextureSlot[sprite]];
+			int slotBits = (vertexFormat == VertexFormat.PACKED) ? unit : Float.floatToRawIntBits(unit);
+			int slot = vertBuffOffset + vertexElements - 1;
+			buffer[slot] = slotBits;
+			buffer[slot + vertexElements] = slotBits;
+			buffer[slot + vertexElements * 2] = slotBits;
+			buffer[slot + vertexElements * 3] = slotBits;
+		}
+	}
+	
+	/**
+	 * Packs a color into 4 unsigned bytes, laid out as rgba in memory
+	 * The components are expected to be in [0, 1]
+	 */
+	static int PackColor(float r, float g, float b, float a)
+	{
+		return ((int)(a * 255.0f + 0.5f) << 24) | (((int)(b * 255.0f + 0.5f) & 0xFF) << 16) 
+				| (((int)(g * 255.0f + 0.5f) & 0xFF) << 8) | ((int)(r * 255.0f + 0.5f) & 0xFF);
 	}
 	
 	/**
@@ -510,9 +1530,53 @@ public class SpriteBatch
 			float depth, float rotation,
 			SpriteEffect effect)
 	{
-		if(this.spriteQueueCount >= SpriteBatch.maxBatchSize)
+		DrawSprite(texture, destLeft, destTop, destRight, destBottom,
+				sourceLeft, sourceTop, sourceRight, sourceBottom,
+				r, g, b, a,
+				originX, originY, depth, rotation,
+				effect, false);
+	}
+	
+	/**
+	 * Draws a sprite that can be flagged opaque
+	 * Opaque sprites must not have translucent pixels, with SpriteSortMode.DEPTHTESTED
+	 * they are drawn without blending and hide what is behind them through the depth buffer.
+	 */
+	public void DrawSprite(Texture2D texture, 
+			float destLeft, float destTop, float destRight, float destBottom,
+			float sourceLeft, float sourceTop, float sourceRight, float sourceBottom,
+			float r, float g, float b, float a,
+			float originX, float originY,
+			float depth, float rotation,
+			SpriteEffect effect, boolean opaque)
+	{
+		// error check
+		if(texture == null)
 			return;
 		
+		// normalize the source rect
+		float invWidth = 1.0f / texture.width;
+		float invHeight = 1.0f / texture.height;
+		
+		DrawSpriteNormalized(texture, destLeft, destTop, destRight, destBottom,
+				sourceLeft * invWidth, sourceTop * invHeight, sourceRight * invWidth, sourceBottom * invHeight,
+				r, g, b, a,
+				originX, originY, depth, rotation,
+				effect, opaque);
+	}
+	
+	/**
+	 * Draws a sprite with a source rect in normalized texture coordinates
+	 * Used when the texture coordinates are precomputed, like for texture regions and animations.
+	 */
+	public void DrawSpriteNormalized(Texture2D texture, 
+			float destX, float destY, float destWidth, float destHeight,
+			float u, float v, float uWidth, float vHeight,
+			float r, float g, float b, float a,
+			float originX, float originY,
+			float depth, float rotation,
+			SpriteEffect effect, boolean opaque)
+	{
 		// error check
 		if(texture == null)
 			return;
@@ -520,52 +1584,354 @@ public class SpriteBatch
 		if(!beginEndPair)
 			return;
 		
+		// reject sprites that can not be visible
+		if(cullingEnabled && IsCulled(destX, destY, destWidth, destHeight, originX, originY, rotation))
+		{
+			culledCount++;
+			return;
+		}
+		
 		// grow sprite gueue if needed
 		if(spriteQueueCount >= spriteQueueArraySize)
-		{
 			GrowSpriteQueue();
-			GrowIntermBuffer();
-		}
 		
-		// get spriteInfo reference
-		SpriteInfo spriteInfo = spriteInfoQueue[spriteQueueCount];
+		int sprite = spriteQueueCount;
+		int spriteOffset = sprite * 4;
 		
 		// set destination
-		spriteInfo.destination.x = destLeft;
-		spriteInfo.destination.y = destTop;
-		spriteInfo.destination.width = destRight;
-		spriteInfo.destination.height = destBottom;
+		spriteDestination[spriteOffset] = destX;
+		spriteDestination[spriteOffset + 1] = destY;
+		spriteDestination[spriteOffset + 2] = destWidth;
+		spriteDestination[spriteOffset + 3] = destHeight;
 		
 		// set color
-		spriteInfo.color.r = r;
-		spriteInfo.color.g = g;
-		spriteInfo.color.b = b;
-		spriteInfo.color.a = a;
+		spriteColor[spriteOffset] = r;
+		spriteColor[spriteOffset + 1] = g;
+		spriteColor[spriteOffset + 2] = b;
+		spriteColor[spriteOffset + 3] = a;
 		
 		// set origin, rotation and depth
-		spriteInfo.originRotationDepth.x = originX;
-		spriteInfo.originRotationDepth.y = originY;
-		spriteInfo.originRotationDepth.z = rotation;
-		spriteInfo.originRotationDepth.w = depth;
+		spriteOriginRotationDepth[spriteOffset] = originX;
+		spriteOriginRotationDepth[spriteOffset + 1] = originY;
+		spriteOriginRotationDepth[spriteOffset + 2] = rotation;
+		spriteOriginRotationDepth[spriteOffset + 3] = depth;
 		
 		// set texture & effect
-		spriteInfo.spriteEffect = effect;
-		spriteInfo.texture = texture;
+		spriteEffect[sprite] = effect.ordinal();
+		spriteOpaque[sprite] = opaque;
+		spriteTextureSlot[sprite] = GetTextureSlot(texture);
+		
+		// set the source rect
+		spriteSource[spriteOffset] = u;
+		spriteSource[spriteOffset + 1] = v;
+		spriteSource[spriteOffset + 2] = uWidth;
+		spriteSource[spriteOffset + 3] = vHeight;
 		
-		// set the spriteInfo source rect
-		spriteInfo.source.x = sourceLeft / texture.width;
-		spriteInfo.source.y = sourceTop / texture.height;
-		spriteInfo.source.width = sourceRight / texture.width;
-		spriteInfo.source.height = sourceBottom / texture.height;
+		SubmitSprite(sprite, texture);
+	}
+	
+	/**
+	 * Queues an unrotated sprite with already normalized texture coordinates
+	 * Used by the primitives that emit multiple quads at once.
+	 */
+	private void DrawQuadNormalized(Texture2D texture,
+			float x, float y, float width, float height,
+			float u, float v, float uWidth, float vHeight,
+			float r, float g, float b, float a,
+			float depth)
+	{
+		// skip empty parts and parts that can not be visible
+		if(width <= 0.0f || height <= 0.0f)
+			return;
 		
+		if(cullingEnabled && IsCulled(x, y, width, height, 0, 0, 0))
+		{
+			culledCount++;
+			return;
+		}
+		
+		// grow sprite gueue if needed
+		if(spriteQueueCount >= spriteQueueArraySize)
+			GrowSpriteQueue();
+		
+		int sprite = spriteQueueCount;
+		int spriteOffset = sprite * 4;
+		
+		spriteDestination[spriteOffset] = x;
+		spriteDestination[spriteOffset + 1] = y;
+		spriteDestination[spriteOffset + 2] = width;
+		spriteDestination[spriteOffset + 3] = height;
+		
+		spriteSource[spriteOffset] = u;
+		spriteSource[spriteOffset + 1] = v;
+		spriteSource[spriteOffset + 2] = uWidth;
+		spriteSource[spriteOffset + 3] = vHeight;
+		
+		spriteColor[spriteOffset] = r;
+		spriteColor[spriteOffset + 1] = g;
+		spriteColor[spriteOffset + 2] = b;
+		spriteColor[spriteOffset + 3] = a;
+		
+		spriteOriginRotationDepth[spriteOffset] = 0;
+		spriteOriginRotationDepth[spriteOffset + 1] = 0;
+		spriteOriginRotationDepth[spriteOffset + 2] = 0;
+		spriteOriginRotationDepth[spriteOffset + 3] = depth;
+		
+		spriteEffect[sprite] = 0;
+		spriteOpaque[sprite] = false;
+		spriteTextureSlot[sprite] = GetTextureSlot(texture);
+		
+		SubmitSprite(sprite, texture);
+	}
+	
+	/**
+	 * Queues a filled in sprite, or draws it directly in immediate mode
+	 */
+	private void SubmitSprite(int sprite, Texture2D texture)
+	{
 		// check sort mode and react upon
 		if(spriteSortMode == SpriteSortMode.IMMEDIATE)
+		{
 			// draw the texture directly
-			RenderBatch(texture, spriteQueueCount, 1);
+			sortIndices[sprite] = sprite;
+			textureTableUnit[spriteTextureSlot[sprite]] = 0;
+			batchTextureSlots[0] = spriteTextureSlot[sprite];
+			batchTextures[0] = texture;
+			batchTextureCount = 1;
+			singleTextureDrawCallCount++;
+			RenderBatch(sprite, 1);
+			ClearTextureTable();
+		}
 		else // Queue this sprite for later sorting and batched rendering
 			spriteQueueCount++;
 	}
 	
+	/**
+	 * Queues a block of square sprites that share a texture and source, centered on their position
+	 * Skips the per sprite overhead of DrawSprite, used by the particle system.
+	 * @param x the x positions of the sprites
+	 * @param y the y positions of the sprites
+	 * @param size the sizes of the sprites
+	 * @param rotation the rotations of the sprites in degrees
+	 * @param color the colors of the sprites, r, g, b and a per sprite
+	 * @param count the amount of sprites to queue
+	 */
+	public void DrawSprites(Texture2D texture, Rectangle source,
+			float[] x, float[] y, float[] size, float[] rotation, float[] color,
+			int count, float depth)
+	{
+		// error check
+		if(texture == null || count <= 0)
+			return;
+		
+		if(!beginEndPair)
+			return;
+		
+		// immediate mode draws every sprite on its own anyway
+		if(spriteSortMode == SpriteSortMode.IMMEDIATE)
+		{
+			for(int i = 0; i < count; i++)
+			{
+				float half = size[i] * 0.5f;
+				DrawSprite(texture, x[i], y[i], size[i], size[i],
+						source.x, source.y, source.width, source.height,
+						color[i * 4], color[i * 4 + 1], color[i * 4 + 2], color[i * 4 + 3],
+						half, half, depth, rotation[i], SpriteEffect.NONE);
+			}
+			
+			return;
+		}
+		
+		// grow the queue once for the whole block
+		while(spriteQueueCount + count > spriteQueueArraySize)
+			GrowSpriteQueue();
+		
+		int slot = GetTextureSlot(texture);
+		float u = source.x / texture.width;
+		float v = source.y / texture.height;
+		float uWidth = source.width / texture.width;
+		float vHeight = source.height / texture.height;
+		boolean culling = cullingEnabled;
+		
+		float[] destination = spriteDestination;
+		float[] sourceRect = spriteSource;
+		float[] colors = spriteColor;
+		float[] originRotationDepth = spriteOriginRotationDepth;
+		int sprite = spriteQueueCount;
+		
+		for(int i = 0; i < count; i++)
+		{
+			float spriteSize = size[i];
+			float half = spriteSize * 0.5f;
+			
+			if(culling && IsCulled(x[i], y[i], spriteSize, spriteSize, half, half, rotation[i]))
+			{
+				culledCount++;
+				continue;
+			}
+			
+			int spriteOffset = sprite * 4;
+			int colorOffset = i * 4;
+			
+			destination[spriteOffset] = x[i];
+			destination[spriteOffset + 1] = y[i];
+			destination[spriteOffset + 2] = spriteSize;
+			destination[spriteOffset + 3] = spriteSize;
+			
+			sourceRect[spriteOffset] = u;
+			sourceRect[spriteOffset + 1] = v;
+			sourceRect[spriteOffset + 2] = uWidth;
+			sourceRect[spriteOffset + 3] = vHeight;
+			
+			colors[spriteOffset] = color[colorOffset];
+			colors[spriteOffset + 1] = color[colorOffset + 1];
+			colors[spriteOffset + 2] = color[colorOffset + 2];
+			colors[spriteOffset + 3] = color[colorOffset + 3];
+			
+			originRotationDepth[spriteOffset] = half;
+			originRotationDepth[spriteOffset + 1] = half;
+			originRotationDepth[spriteOffset + 2] = rotation[i];
+			originRotationDepth[spriteOffset + 3] = depth;
+			
+			spriteEffect[sprite] = 0;
+			spriteOpaque[sprite] = false;
+			spriteTextureSlot[sprite] = slot;
+			sprite++;
+		}
+		
+		spriteQueueCount = sprite;
+	}
+	
+	/**
+	 * Draws a nine patch stretched over a rectangle
+	 * The borders are scaled down when the rectangle is smaller than the borders together.
+	 */
+	public void DrawNinePatch(NinePatch patch, float x, float y, float width, float height, Color color, float depth)
+	{
+		if(patch == null || patch.texture == null || !beginEndPair)
+			return;
+		
+		// fit the borders in the rectangle
+		float left = patch.left;
+		float right = patch.right;
+		float top = patch.top;
+		float bottom = patch.bottom;
+		
+		if(left + right > width && left + right > 0.0f)
+		{
+			float scale = width / (left + right);
+			left *= scale;
+			right *= scale;
+		}
+		
+		if(top + bottom > height && top + bottom > 0.0f)
+		{
+			float scale = height / (top + bottom);
+			top *= scale;
+			bottom *= scale;
+		}
+		
+		// the edges of the columns and rows
+		float x1 = x + left;
+		float x2 = x + width - right;
+		float y1 = y + top;
+		float y2 = y + height - bottom;
+		float[] u = patch.u;
+		float[] v = patch.v;
+		Texture2D texture = patch.texture;
+		float r = color.r, g = color.g, b = color.b, a = color.a;
+		
+		// top row
+		DrawQuadNormalized(texture, x, y, left, top, u[0], v[0], u[1] - u[0], v[1] - v[0], r, g, b, a, depth);
+		DrawQuadNormalized(texture, x1, y, x2 - x1, top, u[1], v[0], u[2] - u[1], v[1] - v[0], r, g, b, a, depth);
+		DrawQuadNormalized(texture, x2, y, right, top, u[2], v[0], u[3] - u[2], v[1] - v[0], r, g, b, a, depth);
+		
+		// middle row
+		DrawQuadNormalized(texture, x, y1, left, y2 - y1, u[0], v[1], u[1] - u[0], v[2] - v[1], r, g, b, a, depth);
+		DrawQuadNormalized(texture, x1, y1, x2 - x1, y2 - y1, u[1], v[1], u[2] - u[1], v[2] - v[1], r, g, b, a, depth);
+		DrawQuadNormalized(texture, x2, y1, right, y2 - y1, u[2], v[1], u[3] - u[2], v[2] - v[1], r, g, b, a, depth);
+		
+		// bottom row
+		DrawQuadNormalized(texture, x, y2, left, bottom, u[0], v[2], u[1] - u[0], v[3] - v[2], r, g, b, a, depth);
+		DrawQuadNormalized(texture, x1, y2, x2 - x1, bottom, u[1], v[2], u[2] - u[1], v[3] - v[2], r, g, b, a, depth);
+		DrawQuadNormalized(texture, x2, y2, right, bottom, u[2], v[2], u[3] - u[2], v[3] - v[2], r, g, b, a, depth);
+	}
+	
+	/**
+	 * Draws a nine patch stretched over a rectangle
+	 */
+	public void DrawNinePatch(NinePatch patch, Rectangle destination, Color color)
+	{
+		DrawNinePatch(patch, destination.x, destination.y, destination.width, destination.height, color, 0);
+	}
+	
+	/**
+	 * Fills a rectangle by repeating a tiled region, the last row and column are cropped
+	 */
+	public void DrawTiled(TiledRegion region, float x, float y, float width, float height, Color color, float depth)
+	{
+		if(region == null || region.texture == null || !beginEndPair)
+			return;
+		
+		Texture2D texture = region.texture;
+		float tileWidth = region.tileWidth;
+		float tileHeight = region.tileHeight;
+		float r = color.r, g = color.g, b = color.b, a = color.a;
+		
+		if(tileWidth <= 0.0f || tileHeight <= 0.0f)
+			return;
+		
+		for(float tileY = 0.0f; tileY < height; tileY += tileHeight)
+		{
+			float h = Math.min(tileHeight, height - tileY);
+			float vHeight = h * region.vPerPixel;
+			
+			for(float tileX = 0.0f; tileX < width; tileX += tileWidth)
+			{
+				float w = Math.min(tileWidth, width - tileX);
+				DrawQuadNormalized(texture, x + tileX, y + tileY, w, h, 
+						region.u, region.v, w * region.uPerPixel, vHeight, r, g, b, a, depth);
+			}
+		}
+	}
+	
+	/**
+	 * Fills a rectangle by repeating a tiled region
+	 */
+	public void DrawTiled(TiledRegion region, Rectangle destination, Color color)
+	{
+		DrawTiled(region, destination.x, destination.y, destination.width, destination.height, color, 0);
+	}
+	
+	/**
+	 * Draws a sprite without origin, rotation or effect
+	 * These sprites take the fast vertex path
+	 */
+	public void DrawSprite(Texture2D texture, 
+			float destLeft, float destTop, float destRight, float destBottom,
+			float sourceLeft, float sourceTop, float sourceRight, float sourceBottom,
+			float r, float g, float b, float a,
+			float depth)
+	{
+		DrawSprite(texture, destLeft, destTop, destRight, destBottom,
+				sourceLeft, sourceTop, sourceRight, sourceBottom,
+				r, g, b, a,
+				0, 0, depth, 0,
+				SpriteEffect.NONE);
+	}
+	
+	/**
+	 * Draws a sprite with a source rect and depth that can be flagged opaque
+	 */
+	public void DrawSprite(Texture2D texture, Vec2 position, Rectangle source, Color color, float depth, boolean opaque)
+	{
+		DrawSprite(texture, position.x, position.y, source.width, source.height,
+				source.x, source.y, source.width, source.height,
+				color.r, color.g, color.b, color.a,
+				0, 0, depth, 0,
+				SpriteEffect.NONE, opaque);
+	}
+	
 	/**
 	 * Standard draw sprite overload
 	 */
@@ -645,108 +2011,81 @@ public class SpriteBatch
 	}
 	
 	/**
-	 * Draws text
+	 * Draws a texture region, trimmed regions are placed as if they were not trimmed
 	 */
-	public void DrawText(SpriteFont font, String text, Vec2 position)
+	public void DrawSprite(TextureRegion region, float x, float y, Color color, float depth)
 	{
-		font.DrawText(this, text, position, Color.WHITE, 1.0f, 0.0f, 0.0f, SpriteEffect.NONE);
+		DrawSpriteNormalized(region.texture, x + region.offsetX, y + region.offsetY, region.width, region.height,
+				region.u, region.v, region.u2 - region.u, region.v2 - region.v,
+				color.r, color.g, color.b, color.a,
+				0, 0, depth, 0,
+				SpriteEffect.NONE, false);
 	}
 	
 	/**
-	 * Draws text
+	 * Draws a texture region stretched over a rectangle
 	 */
-	public void DrawText(SpriteFont font, String text, Vec2 position, Color color)
+	public void DrawSprite(TextureRegion region, Rectangle destination, Color color)
 	{
-		font.DrawText(this, text, position, color, 1.0f, 0.0f, 0.0f, SpriteEffect.NONE);
+		float scaleX = destination.width / region.originalWidth;
+		float scaleY = destination.height / region.originalHeight;
+		
+		DrawSpriteNormalized(region.texture, destination.x + region.offsetX * scaleX, destination.y + region.offsetY * scaleY,
+				region.width * scaleX, region.height * scaleY,
+				region.u, region.v, region.u2 - region.u, region.v2 - region.v,
+				color.r, color.g, color.b, color.a,
+				0, 0, 0, 0,
+				SpriteEffect.NONE, false);
 	}
 	
 	/**
-	 * Draws text
+	 * Draws a texture region with origin, scale, rotation and effect
 	 */
-	public void DrawText(SpriteFont font, String text, Vec2 position, Color color, float scale, float rot, float spacing)
+	public void DrawSprite(TextureRegion region, Vec2 position, Color color, Vec2 origin, float scale, float rotation, SpriteEffect effect)
 	{
-		font.DrawText(this, text, position, color, scale, rot, spacing, SpriteEffect.NONE);
+		DrawSpriteNormalized(region.texture, position.x, position.y, region.width * scale, region.height * scale,
+				region.u, region.v, region.u2 - region.u, region.v2 - region.v,
+				color.r, color.g, color.b, color.a,
+				(origin.x - region.offsetX) * scale, (origin.y - region.offsetY) * scale, 0, rotation,
+				effect, false);
 	}
 	
 	/**
-	 * Texture comparator
+	 * Draws the rendered part of a render target, flipped back to be upright
+	 * @param width the width of the viewport that was rendered to
+	 * @param height the height of the viewport that was rendered to
+	 * @param destination where to stretch the image to
 	 */
-	private class TextureComp implements Comparator<SpriteInfo>
+	public void DrawRenderTarget(RenderTarget2D target, float width, float height, Rectangle destination, Color color)
 	{
-		@Override
-		public int compare(SpriteInfo lhs, SpriteInfo rhs)
-		{
-			if(lhs == null || lhs.texture == null)
-				return 1;
-			
-			if(rhs == null || rhs.texture == null)
-				return -1;
-			
-			return lhs.texture.textureHandle - rhs.texture.textureHandle;
-		}
+		DrawSpriteNormalized(target, destination.x, destination.y, destination.width, destination.height,
+				0, 0, width / target.width, height / target.height,
+				color.r, color.g, color.b, color.a,
+				0, 0, 0, 0,
+				SpriteEffect.FLIP_VERTICAL, false);
 	}
 	
 	/**
-	 * BackToFront comparator
+	 * Draws text
 	 */
-	private class BackToFrontComp implements Comparator<SpriteInfo>
+	public void DrawText(SpriteFont font, String text, Vec2 position)
 	{
-		@Override
-		public int compare(SpriteInfo lhs, SpriteInfo rhs) 
-		{
-			if(lhs == null)
-				return -1;
-			
-			if(rhs == null)
-				return 1;
-			
-			return (int) (lhs.originRotationDepth.w - rhs.originRotationDepth.w);
-		}
-		
+		font.DrawText(this, text, position, Color.WHITE, 1.0f, 0.0f, 0.0f, SpriteEffect.NONE);
 	}
 	
 	/**
-	 * FrontToBack comparator
+	 * Draws text
 	 */
-	private class FrontToBackComp implements Comparator<SpriteInfo>
+	public void DrawText(SpriteFont font, String text, Vec2 position, Color color)
 	{
-		@Override
-		public int compare(SpriteInfo lhs, SpriteInfo rhs) 
-		{
-			if(lhs == null)
-				return 1;
-			
-			if(rhs == null)
-				return -1;
-			
-			return (int) (rhs.originRotationDepth.w - lhs.originRotationDepth.w);
-		}
-		
+		font.DrawText(this, text, position, color, 1.0f, 0.0f, 0.0f, SpriteEffect.NONE);
 	}
 	
 	/**
-	 * Holding sprite info!
-	 * @author Wildrune
-	 *
+	 * Draws text
 	 */
-	public class SpriteInfo
+	public void DrawText(SpriteFont font, String text, Vec2 position, Color color, float scale, float rot, float spacing)
 	{
-		// sprite info
-		public Rectangle source;
-		public Rectangle destination;
-		public Texture2D texture;
-		public Color color;
-		public Vec4 originRotationDepth;
-		public SpriteEffect spriteEffect;
-		
-		public SpriteInfo()
-		{
-			source = new Rectangle(0, 0, 1, 1);
-			destination = new Rectangle(0, 0, 1, 1);
-			texture = null;
-			color = new Color(1, 1, 1, 1);
-			originRotationDepth = new Vec4(0, 0, 0, 0);
-			spriteEffect = SpriteEffect.NONE;
-		}
+		font.DrawText(this, text, position, color, scale, rot, spacing, SpriteEffect.NONE);
 	}
 }
@@ -0,0 +1,438 @@
+package wildrune.ouyaframework.graphics;
+
+import static android.opengl.GLES20.*;
+
+import wildrune.ouyaframework.graphics.RenderStats.Stat;
+import wildrune.ouyaframework.graphics.SpriteBatch.SpriteEffect;
+import wildrune.ouyaframework.graphics.basic.*;
+import wildrune.ouyaframework.graphics.states.BlendState;
+import wildrune.ouyaframework.math.*;
+import wildrune.ouyaframework.utils.RadixSort;
+import wildrune.ouyaframework.utils.interfaces.IDisposable;
+import android.util.Log;
+
+/**
+ * Records static sprites once into a static vertex buffer
+ * and replays them with a single draw call per texture.
+ * Sprites are grouped per texture when recording ends, the order of
+ * sprites that share a texture is kept.
+ * @author Wildrune
+ *
+ */
+public class SpriteCache implements IDisposable
+{
+	// static constants
+	private final static String LOG_TAG = "SpriteCache";
+
+	private final static int VERTEX_ELEMENTS = 9;
+	private final static int BYTES_PER_FLOAT = 4;
+	private final static int BYTES_PER_SHORT = 2;
+	private final static int verticesPerSprite = 4;
+	private final static int indicesPerSprite = 6;
+
+	// indices are shorts, so this is the most we can address
+	private final static int maxCacheSize = 65536 / verticesPerSprite;
+
+	// cache shaders
+	private final String vShader =
+			"attribute vec3 a_position;" +
+			"attribute vec4 a_color;" +
+			"attribute vec2 a_texcoord_one;" +
+
+			"uniform mat4 uTransform;" +
+			"uniform vec4 uTint;" +
+
+			"varying vec4 v_color;" +
+			"varying vec2 v_texcoord_one;" +
+
+			"void main()" +
+			"{" +
+				"gl_Position = uTransform * vec4(a_position, 1.0);" +
+				"v_color = a_color * uTint;" +
+				"v_texcoord_one = a_texcoord_one;" +
+			"}";
+
+	private final String fShader =
+			"precision mediump float;" +
+			"uniform sampler2D u_texture_one;" +
+			"varying vec4 v_color;" +
+			"varying vec2 v_texcoord_one;" +
+			"void main()" +
+			"{" +
+				"gl_FragColor = v_color * texture2D(u_texture_one, v_texcoord_one );" +
+			"}";
+
+	// members
+	private final GraphicsSystem graphics;
+	private final int		maxSprites;
+	private float[]			vertices;
+	private float[]			sortedVertices;
+	private Texture2D[]		spriteTextures;
+	private int				spriteCount;
+	private boolean			recording;
+
+	// sorting the sprites per texture
+	private long[]			sortKeys;
+	private int[]			sortIndices;
+	private RadixSort		radixSort;
+
+	// texture runs created when recording ends
+	private Texture2D[]		runTextures;
+	private int[]			runStarts;
+	private int[]			runCounts;
+	private int				runCount;
+
+	private VertexBuffer	vertexBuffer;
+	private IndexBuffer		indexBuffer;
+
+	private ShaderProgram	cacheProgram;
+	private Mat4			projectionMatrix;
+	private Mat4			transformMatrix;
+
+	// shader program locations
+	int matrixLocation;
+	int tintLocation;
+	int aPosition;
+	int aColor;
+	int aTexCoord;
+	int uTexOne;
+
+	/**
+	 * Creates a cache
+	 * @param maxSprites the maximum amount of sprites this cache can hold
+	 */
+	public SpriteCache(GraphicsSystem graphics, int maxSprites)
+	{
+		if(maxSprites > maxCacheSize)
+		{
+			Log.d(LOG_TAG, "Cache size clamped to " + maxCacheSize);
+			maxSprites = maxCacheSize;
+		}
+
+		this.graphics = graphics;
+		this.maxSprites = maxSprites;
+
+		// create program
+		cacheProgram = new ShaderProgram();
+		if(!cacheProgram.Create())
+			Log.d(LOG_TAG, "Could not create shaderProgram");
+
+		if(!cacheProgram.LinkShaders(vShader, fShader))
+			Log.d(LOG_TAG, "Could not link shaderProgram");
+
+		// set variable locations for shader
+		matrixLocation = cacheProgram.GetUniformLocation("uTransform");
+		tintLocation = cacheProgram.GetUniformLocation("uTint");
+		aPosition = cacheProgram.GetAttribLocation("a_position");
+		aColor = cacheProgram.GetAttribLocation("a_color");
+		aTexCoord = cacheProgram.GetAttribLocation("a_texcoord_one");
+		uTexOne = cacheProgram.GetUniformLocation("u_texture_one");
+
+		// create buffers
+		vertexBuffer = new VertexBuffer(maxSprites * verticesPerSprite * VERTEX_ELEMENTS, true);
+		vertexBuffer.Create();
+
+		indexBuffer = new IndexBuffer(maxSprites * indicesPerSprite, true);
+		CreateIndexValues();
+
+		// recording data
+		vertices = new float[maxSprites * verticesPerSprite * VERTEX_ELEMENTS];
+		sortedVertices = new float[vertices.length];
+		spriteTextures = new Texture2D[maxSprites];
+		sortKeys = new long[maxSprites];
+		sortIndices = new int[maxSprites];
+		radixSort = new RadixSort(maxSprites);
+
+		runTextures = new Texture2D[maxSprites];
+		runStarts = new int[maxSprites];
+		runCounts = new int[maxSprites];
+		runCount = 0;
+
+		// create matrices
+		projectionMatrix = Mat4.CreateOrtho2D( (int)graphics.viewportNormal.width, (int)graphics.viewportNormal.height);
+		transformMatrix = new Mat4();
+
+		spriteCount = 0;
+		recording = false;
+	}
+
+	/**
+	 * Dispose of used resources
+	 */
+	@Override
+	public void Dispose()
+	{
+		cacheProgram.Dispose();
+		vertexBuffer.Dispose();
+		indexBuffer.Dispose();
+
+		for(int i = 0; i < runCount; i++)
+			runTextures[i] = null;
+
+		runCount = 0;
+	}
+
+	/**
+	 * The indices never change, each sprite gets its own quad
+	 */
+	private void CreateIndexValues()
+	{
+		short[] indices = new short[maxSprites * indicesPerSprite];
+
+		int startOffset = 0;
+		for(int i = 0; i < maxSprites * verticesPerSprite; i += verticesPerSprite)
+		{
+			indices[startOffset++] = (short) i;
+			indices[startOffset++] = (short) (i + 1);
+			indices[startOffset++] = (short) (i + 2);
+
+			indices[startOffset++] = (short) (i + 1);
+			indices[startOffset++] = (short) (i + 3);
+			indices[startOffset++] = (short) (i + 2);
+		}
+
+		indexBuffer.SetData(0, indices, 0, indices.length);
+		indexBuffer.Create();
+		indexBuffer.Apply();
+	}
+
+	/**
+	 * Gets the amount of recorded sprites
+	 */
+	public int GetSpriteCount()
+	{
+		return spriteCount;
+	}
+
+	/**
+	 * Starts recording, the previous contents of the cache are discarded
+	 */
+	public void Begin()
+	{
+		if(recording)
+		{
+			Log.e(LOG_TAG, "Cannot nest Begin calls on a single SpriteCache");
+			return;
+		}
+
+		for(int i = 0; i < runCount; i++)
+			runTextures[i] = null;
+
+		spriteCount = 0;
+		runCount = 0;
+		recording = true;
+	}
+
+	/**
+	 * Stops recording and uploads the recorded sprites to the GPU
+	 */
+	public void End()
+	{
+		if(!recording)
+		{
+			Log.e(LOG_TAG, "Begin must be called before End");
+			return;
+		}
+
+		recording = false;
+		if(spriteCount <= 0)
+			return;
+
+		// group the sprites per texture, in order of first use
+		int count = spriteCount;
+		for(int i = 0; i < count; i++)
+		{
+			sortKeys[i] = GetTextureRun(spriteTextures[i]);
+			sortIndices[i] = i;
+		}
+
+		radixSort.Sort(sortKeys, sortIndices, count);
+
+		// copy the vertices over in sorted order
+		int spriteFloats = verticesPerSprite * VERTEX_ELEMENTS;
+		for(int i = 0; i < count; i++)
+			System.arraycopy(vertices, sortIndices[i] * spriteFloats, sortedVertices, i * spriteFloats, spriteFloats);
+
+		// set the runs start
+		int start = 0;
+		for(int i = 0; i < runCount; i++)
+		{
+			runStarts[i] = start;
+			start += runCounts[i];
+		}
+
+		for(int i = 0; i < count; i++)
+			spriteTextures[i] = null;
+
+		// upload once
+		vertexBuffer.Bind();
+		vertexBuffer.SetData(0, sortedVertices, 0, count * spriteFloats);
+		vertexBuffer.Apply();
+	}
+
+	/**
+	 * Gets the run of a texture while recording, creates a new run when needed
+	 */
+	private int GetTextureRun(Texture2D texture)
+	{
+		for(int i = 0; i < runCount; i++)
+		{
+			if(runTextures[i] == texture)
+			{
+				runCounts[i]++;
+				return i;
+			}
+		}
+
+		runTextures[runCount] = texture;
+		runCounts[runCount] = 1;
+		return runCount++;
+	}
+
+	/**
+	 * Adds a sprite to the cache
+	 */
+	public void Add(Texture2D texture,
+			float destLeft, float destTop, float destRight, float destBottom,
+			float sourceLeft, float sourceTop, float sourceRight, float sourceBottom,
+			float r, float g, float b, float a,
+			float originX, float originY,
+			float depth, float rotation,
+			SpriteEffect effect)
+	{
+		// error check
+		if(texture == null || !recording)
+			return;
+
+		if(spriteCount >= maxSprites)
+		{
+			Log.d(LOG_TAG, "SpriteCache is full");
+			return;
+		}
+
+		// normalize the source rectangle
+		float sourceX = sourceLeft / texture.width;
+		float sourceY = sourceTop / texture.height;
+		float sourceWidth = sourceRight / texture.width;
+		float sourceHeight = sourceBottom / texture.height;
+
+		// rotate sprite
+		float cos = 1.0f;
+		float sin = 0.0f;
+		if(rotation != 0.0f)
+		{
+			cos = (float) Math.cos(rotation * RuneMath.TORAD);
+			sin = (float) Math.sin(rotation * RuneMath.TORAD);
+		}
+
+		int flip = effect.ordinal();
+		float[] buffer = vertices;
+		int offset = spriteCount * verticesPerSprite * VERTEX_ELEMENTS;
+
+		for(int i = 0; i < verticesPerSprite; i++)
+		{
+			// corner of the sprite, bit 0 is x and bit 1 is y
+			float cornerX = i & 1;
+			float cornerY = i >> 1;
+			float uvX = (i ^ flip) & 1;
+			float uvY = (i ^ flip) >> 1;
+
+			// scale, offset and rotate
+			float x = cornerX * destRight - originX;
+			float y = cornerY * destBottom - originY;
+
+			// snapped to whole pixels like the spritebatch does
+			buffer[offset]     = SpriteBatch.SnapToPixel(x * cos - y * sin + destLeft);
+			buffer[offset + 1] = SpriteBatch.SnapToPixel(x * sin + y * cos + destTop);
+			buffer[offset + 2] = depth;
+
+			buffer[offset + 3] = r;
+			buffer[offset + 4] = g;
+			buffer[offset + 5] = b;
+			buffer[offset + 6] = a;
+
+			buffer[offset + 7] = uvX * sourceWidth + sourceX;
+			buffer[offset + 8] = uvY * sourceHeight + sourceY;
+
+			offset += VERTEX_ELEMENTS;
+		}
+
+		spriteTextures[spriteCount++] = texture;
+	}
+
+	/**
+	 * Adds a sprite to the cache
+	 */
+	public void Add(Texture2D texture, Vec2 position, Color color)
+	{
+		Add(texture, position.x, position.y, texture.width, texture.height,
+				0, 0, texture.width, texture.height,
+				color.r, color.g, color.b, color.a,
+				0, 0, 0, 0,
+				SpriteEffect.NONE);
+	}
+
+	/**
+	 * Adds a sprite with a source rectangle to the cache
+	 */
+	public void Add(Texture2D texture, Vec2 position, Rectangle source, Color color)
+	{
+		Add(texture, position.x, position.y, source.width, source.height,
+				source.x, source.y, source.width, source.height,
+				color.r, color.g, color.b, color.a,
+				0, 0, 0, 0,
+				SpriteEffect.NONE);
+	}
+
+	/**
+	 * Draws the cache without a transform
+	 */
+	public void Draw()
+	{
+		Draw(null, Color.WHITE, BlendState.NonPremultiplied);
+	}
+
+	/**
+	 * Draws the cache
+	 * @param transform the world transform to apply to the cached sprites, can be null
+	 * @param tint the color to multiply the cached sprites with
+	 * @param blendState the blendstate to draw with
+	 */
+	public void Draw(Mat4 transform, Color tint, BlendState blendState)
+	{
+		if(recording || runCount <= 0)
+			return;
+
+		// combine the transform with the projection
+		if(transform != null)
+			Mat4.Multiply(transformMatrix, projectionMatrix, transform);
+		else
+			System.arraycopy(projectionMatrix.elements, 0, transformMatrix.elements, 0, 16);
+
+		// set the shader program
+		cacheProgram.Bind();
+		cacheProgram.SetUniform(matrixLocation, transformMatrix.elements);
+		cacheProgram.SetUniform(tintLocation, tint.r, tint.g, tint.b, tint.a);
+		cacheProgram.SetUniform(uTexOne, 0);
+
+		// set the buffers
+		vertexBuffer.Bind();
+		int bytesPerVertex = VERTEX_ELEMENTS * BYTES_PER_FLOAT;
+		vertexBuffer.SetVertexAttribPointer(0 * BYTES_PER_FLOAT, aPosition, 3, bytesPerVertex);
+		vertexBuffer.SetVertexAttribPointer(3 * BYTES_PER_FLOAT, aColor, 4, bytesPerVertex);
+		vertexBuffer.SetVertexAttribPointer(7 * BYTES_PER_FLOAT, aTexCoord, 2, bytesPerVertex);
+		indexBuffer.Bind();
+
+		graphics.SetBlendingState(blendState);
+
+		// one draw call per texture
+		for(int i = 0; i < runCount; i++)
+		{
+			runTextures[i].Bind(0);
+			glDrawElements(GL_TRIANGLES, runCounts[i] * indicesPerSprite, GL_UNSIGNED_SHORT,
+					runStarts[i] * indicesPerSprite * BYTES_PER_SHORT);
+			RenderStats.Increment(Stat.DRAW_CALLS);
+			RenderStats.Add(Stat.SPRITES, runCounts[i]);
+		}
+	}
+}
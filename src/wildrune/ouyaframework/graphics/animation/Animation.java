@@ -0,0 +1,178 @@
+package wildrune.ouyaframework.graphics.animation;
+
+import wildrune.ouyaframework.graphics.basic.Texture2D;
+import wildrune.ouyaframework.graphics.basic.TextureRegion;
+
+/**
+ * A clip of frames from one texture with their own durations
+ * All lookup tables are built once, so finding the frame for a time never allocates.
+ * A cycle is one run through the frames, for ping-pong it goes forward and back again.
+ * @author Wildrune
+ *
+ */
+public class Animation
+{
+	public enum PlayMode
+	{
+		ONCE,
+		LOOP,
+		PINGPONG
+	}
+
+	// members
+	public final Texture2D texture;
+	public final PlayMode playMode;
+	public final int frameCount;
+
+	// normalized u, v, width and height per frame
+	final float[] uvs;
+	// pixel width, height and trim offset per frame
+	final float[] sizes;
+
+	// the frames of a cycle and the end time of each of them
+	final int[] cycleFrames;
+	final float[] cycleEnds;
+	final float cycleDuration;
+
+	// event markers, an event fires when its frame is entered
+	int[] eventFrames;
+	int[] eventIds;
+	int eventCount;
+
+	/**
+	 * Creates a clip
+	 * @param frames the frames, all on the same texture
+	 * @param durations the time each frame is shown in seconds
+	 */
+	public Animation(TextureRegion[] frames, float[] durations, PlayMode playMode)
+	{
+		this.texture = frames[0].texture;
+		this.playMode = playMode;
+		this.frameCount = frames.length;
+
+		uvs = new float[frameCount * 4];
+		sizes = new float[frameCount * 4];
+		for(int i = 0; i < frameCount; i++)
+		{
+			TextureRegion frame = frames[i];
+			uvs[i * 4] = frame.u;
+			uvs[i * 4 + 1] = frame.v;
+			uvs[i * 4 + 2] = frame.u2 - frame.u;
+			uvs[i * 4 + 3] = frame.v2 - frame.v;
+
+			sizes[i * 4] = frame.width;
+			sizes[i * 4 + 1] = frame.height;
+			sizes[i * 4 + 2] = frame.offsetX;
+			sizes[i * 4 + 3] = frame.offsetY;
+		}
+
+		// ping-pong plays the frames in between twice
+		int cycleLength = (playMode == PlayMode.PINGPONG && frameCount > 1) ? frameCount * 2 - 2 : frameCount;
+		cycleFrames = new int[cycleLength];
+		cycleEnds = new float[cycleLength];
+
+		float time = 0.0f;
+		for(int i = 0; i < cycleLength; i++)
+		{
+			int frame = i < frameCount ? i : cycleLength - i;
+			time += durations[frame];
+			cycleFrames[i] = frame;
+			cycleEnds[i] = time;
+		}
+
+		cycleDuration = time;
+
+		eventFrames = new int[4];
+		eventIds = new int[4];
+		eventCount = 0;
+	}
+
+	/**
+	 * Creates a clip where every frame has the same duration
+	 */
+	public Animation(TextureRegion[] frames, float frameDuration, PlayMode playMode)
+	{
+		this(frames, FillDurations(frames.length, frameDuration), playMode);
+	}
+
+	/**
+	 * Creates a clip from a row by row grid of frames in a texture
+	 * @param firstFrame the index of the first frame in the grid
+	 */
+	public static Animation FromGrid(Texture2D texture, int frameWidth, int frameHeight,
+			int firstFrame, int frameCount, float frameDuration, PlayMode playMode)
+	{
+		int columns = texture.width / frameWidth;
+		TextureRegion[] frames = new TextureRegion[frameCount];
+
+		for(int i = 0; i < frameCount; i++)
+		{
+			int index = firstFrame + i;
+			frames[i] = new TextureRegion(texture, (index % columns) * frameWidth, (index / columns) * frameHeight,
+					frameWidth, frameHeight);
+		}
+
+		return new Animation(frames, frameDuration, playMode);
+	}
+
+	/**
+	 * Adds an event marker
+	 * @param frame the frame that fires the event when it is entered
+	 * @param eventId the id passed to the listener
+	 */
+	public void AddEvent(int frame, int eventId)
+	{
+		if(eventCount >= eventFrames.length)
+		{
+			int[] newFrames = new int[eventFrames.length * 2];
+			int[] newIds = new int[eventIds.length * 2];
+			System.arraycopy(eventFrames, 0, newFrames, 0, eventCount);
+			System.arraycopy(eventIds, 0, newIds, 0, eventCount);
+			eventFrames = newFrames;
+			eventIds = newIds;
+		}
+
+		eventFrames[eventCount] = frame;
+		eventIds[eventCount] = eventId;
+		eventCount++;
+	}
+
+	/**
+	 * Gets the duration of one cycle in seconds
+	 */
+	public float GetCycleDuration()
+	{
+		return cycleDuration;
+	}
+
+	/**
+	 * Finds the position in the cycle that is shown at a time
+	 * @param time the time since the start of the cycle
+	 */
+	int GetCyclePosition(float time)
+	{
+		// binary search for the first frame that ends after the time
+		int low = 0;
+		int high = cycleEnds.length - 1;
+
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(cycleEnds[middle] <= time)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		return low;
+	}
+
+	private static float[] FillDurations(int count, float duration)
+	{
+		float[] durations = new float[count];
+		for(int i = 0; i < count; i++)
+			durations[i] = duration;
+
+		return durations;
+	}
+}
@@ -0,0 +1,210 @@
+package wildrune.ouyaframework.graphics.animation;
+
+import wildrune.ouyaframework.graphics.SpriteBatch;
+import wildrune.ouyaframework.graphics.SpriteBatch.SpriteEffect;
+import wildrune.ouyaframework.graphics.animation.Animation.PlayMode;
+import wildrune.ouyaframework.graphics.basic.Color;
+import wildrune.ouyaframework.math.Vec2;
+
+/**
+ * Plays an animation clip
+ * Keeps the time within the current cycle, so the frame lookup stays precise however long it plays.
+ * @author Wildrune
+ *
+ */
+public class AnimationPlayer
+{
+	// members
+	private Animation clip;
+	private IAnimationListener listener;
+	private float speed;
+	private boolean playing;
+	private boolean finished;
+
+	private int cycle;
+	private float cycleTime;
+	private int position;
+	private long step;
+
+	// the index in the animation system, -1 when not in one
+	int systemIndex;
+
+	/**
+	 * Creates an idle player, used by the pool
+	 */
+	public AnimationPlayer()
+	{
+		speed = 1.0f;
+		systemIndex = -1;
+	}
+
+	/**
+	 * Starts playing a clip from the start
+	 */
+	public void Play(Animation clip)
+	{
+		this.clip = clip;
+		cycle = 0;
+		cycleTime = 0.0f;
+		position = 0;
+		step = 0;
+		playing = true;
+		finished = false;
+
+		FireEvents(0);
+	}
+
+	public void Pause()
+	{
+		playing = false;
+	}
+
+	public void Resume()
+	{
+		if(clip != null && !finished)
+			playing = true;
+	}
+
+	/**
+	 * Sets the playback speed, 1 is normal speed
+	 */
+	public void SetSpeed(float speed)
+	{
+		this.speed = Math.max(0.0f, speed);
+	}
+
+	public void SetListener(IAnimationListener listener)
+	{
+		this.listener = listener;
+	}
+
+	public Animation GetClip()
+	{
+		return clip;
+	}
+
+	public boolean IsPlaying()
+	{
+		return playing;
+	}
+
+	/**
+	 * Checks if a clip that plays once has reached its end
+	 */
+	public boolean IsFinished()
+	{
+		return finished;
+	}
+
+	/**
+	 * Gets the frame of the clip that is shown
+	 */
+	public int GetFrame()
+	{
+		return clip.cycleFrames[position];
+	}
+
+	/**
+	 * Advances the time and fires the events of the frames that are entered
+	 */
+	public void Update(float dt)
+	{
+		if(!playing || clip == null || clip.cycleDuration <= 0.0f)
+			return;
+
+		Animation anim = clip;
+		int cycleLength = anim.cycleFrames.length;
+		int newPosition;
+
+		cycleTime += dt * speed;
+		if(cycleTime >= anim.cycleDuration)
+		{
+			if(anim.playMode == PlayMode.ONCE)
+			{
+				cycleTime = anim.cycleDuration;
+				finished = true;
+			}
+			else
+			{
+				int cycles = (int) (cycleTime / anim.cycleDuration);
+				cycleTime -= cycles * anim.cycleDuration;
+				cycle += cycles;
+			}
+		}
+
+		newPosition = finished ? cycleLength - 1 : anim.GetCyclePosition(cycleTime);
+
+		// fire the events of every frame passed, but at most one cycle worth
+		long newStep = (long) cycle * cycleLength + newPosition;
+		if(newStep != step)
+		{
+			long first = Math.max(step + 1, newStep - cycleLength + 1);
+			for(long s = first; s <= newStep; s++)
+				FireEvents(anim.cycleFrames[(int) (s % cycleLength)]);
+
+			step = newStep;
+			position = newPosition;
+		}
+
+		if(finished)
+		{
+			playing = false;
+			if(listener != null)
+				listener.OnAnimationFinished(this);
+		}
+	}
+
+	/**
+	 * Draws the current frame at a position
+	 */
+	public void Draw(SpriteBatch batch, float x, float y, Color color, float depth)
+	{
+		if(clip == null)
+			return;
+
+		int frame = clip.cycleFrames[position] * 4;
+		float[] uvs = clip.uvs;
+		float[] sizes = clip.sizes;
+
+		batch.DrawSpriteNormalized(clip.texture, x + sizes[frame + 2], y + sizes[frame + 3], sizes[frame], sizes[frame + 1],
+				uvs[frame], uvs[frame + 1], uvs[frame + 2], uvs[frame + 3],
+				color.r, color.g, color.b, color.a,
+				0, 0, depth, 0,
+				SpriteEffect.NONE, false);
+	}
+
+	/**
+	 * Draws the current frame with origin, scale, rotation and effect
+	 */
+	public void Draw(SpriteBatch batch, Vec2 position, Color color, Vec2 origin, float scale, float rotation, SpriteEffect effect, float depth)
+	{
+		if(clip == null)
+			return;
+
+		int frame = clip.cycleFrames[this.position] * 4;
+		float[] uvs = clip.uvs;
+		float[] sizes = clip.sizes;
+
+		batch.DrawSpriteNormalized(clip.texture, position.x, position.y, sizes[frame] * scale, sizes[frame + 1] * scale,
+				uvs[frame], uvs[frame + 1], uvs[frame + 2], uvs[frame + 3],
+				color.r, color.g, color.b, color.a,
+				(origin.x - sizes[frame + 2]) * scale, (origin.y - sizes[frame + 3]) * scale, depth, rotation,
+				effect, false);
+	}
+
+	/**
+	 * Fires the events marked on a frame
+	 */
+	private void FireEvents(int frame)
+	{
+		if(listener == null)
+			return;
+
+		Animation anim = clip;
+		for(int i = 0; i < anim.eventCount; i++)
+		{
+			if(anim.eventFrames[i] == frame)
+				listener.OnAnimationEvent(this, anim.eventIds[i]);
+		}
+	}
+}
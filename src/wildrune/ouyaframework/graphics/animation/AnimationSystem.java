@@ -0,0 +1,91 @@
+package wildrune.ouyaframework.graphics.animation;
+
+import java.util.ArrayList;
+
+import wildrune.ouyaframework.utils.ObjectPool;
+
+/**
+ * Owns the active animation players and advances them all at once
+ * Released players go back to a pool.
+ * @author Wildrune
+ *
+ */
+public class AnimationSystem
+{
+	// members
+	private final ObjectPool<AnimationPlayer> playerPool;
+	private final ArrayList<AnimationPlayer> players;
+
+	/**
+	 * Creates an animation system
+	 * @param capacity the amount of players to preallocate
+	 */
+	public AnimationSystem(int capacity)
+	{
+		playerPool = new ObjectPool<AnimationPlayer>(AnimationPlayer.class);
+		players = new ArrayList<AnimationPlayer>(capacity);
+
+		for(int i = 0; i < capacity; i++)
+			playerPool.Recycle(new AnimationPlayer());
+	}
+
+	/**
+	 * Gets a player from the pool and starts a clip on it
+	 */
+	public AnimationPlayer Obtain(Animation clip)
+	{
+		return Obtain(clip, null);
+	}
+
+	/**
+	 * Gets a player from the pool and starts a clip on it
+	 * @param listener receives the events, including those of the first frame
+	 */
+	public AnimationPlayer Obtain(Animation clip, IAnimationListener listener)
+	{
+		AnimationPlayer player = playerPool.Get();
+		player.systemIndex = players.size();
+		players.add(player);
+		player.SetListener(listener);
+		player.Play(clip);
+
+		return player;
+	}
+
+	/**
+	 * Gives a player back to the pool
+	 * A listener may only release the player that called it.
+	 */
+	public void Release(AnimationPlayer player)
+	{
+		int index = player.systemIndex;
+		if(index < 0)
+			return;
+
+		// move the last player in the gap
+		int last = players.size() - 1;
+		AnimationPlayer moved = players.get(last);
+		players.set(index, moved);
+		moved.systemIndex = index;
+		players.remove(last);
+
+		player.systemIndex = -1;
+		player.SetListener(null);
+		player.Pause();
+		playerPool.Recycle(player);
+	}
+
+	/**
+	 * Advances all players, called from the game update
+	 */
+	public void Update(float dt)
+	{
+		for(int i = players.size() - 1; i >= 0; i--)
+			players.get(i).Update(dt);
+	}
+
+	public int GetPlayerCount()
+	{
+		return players.size();
+	}
+}
@@ -0,0 +1,13 @@
+package wildrune.ouyaframework.graphics.animation;
+
+/**
+ * Receives the event markers and the end of the clips of an animation player
+ * @author Wildrune
+ *
+ */
+public interface IAnimationListener
+{
+	public void OnAnimationEvent(AnimationPlayer player, int eventId);
+
+	public void OnAnimationFinished(AnimationPlayer player);
+}
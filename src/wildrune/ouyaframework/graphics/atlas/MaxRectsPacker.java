@@ -0,0 +1,191 @@
+package wildrune.ouyaframework.graphics.atlas;
+
+import java.util.ArrayList;
+
+/**
+ * Packs rectangles in a fixed size area with the MaxRects best short side fit heuristic
+ * Keeps a list of maximal free rectangles that may overlap each other.
+ * @author Wildrune
+ *
+ */
+public class MaxRectsPacker
+{
+	// a rectangle in whole pixels
+	private final static class Rect
+	{
+		int x, y, width, height;
+
+		Rect(int x, int y, int width, int height)
+		{
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		boolean Contains(Rect other)
+		{
+			return other.x >= x && other.y >= y &&
+					other.x + other.width <= x + width &&
+					other.y + other.height <= y + height;
+		}
+	}
+
+	// members
+	public final int width;
+	public final int height;
+
+	private final ArrayList<Rect> freeRects;
+	private final ArrayList<Rect> newFreeRects;
+	private int usedWidth;
+	private int usedHeight;
+
+	/**
+	 * Creates a packer for an area
+	 */
+	public MaxRectsPacker(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+
+		freeRects = new ArrayList<Rect>();
+		newFreeRects = new ArrayList<Rect>();
+		Reset();
+	}
+
+	/**
+	 * Empties the area
+	 */
+	public void Reset()
+	{
+		freeRects.clear();
+		freeRects.add(new Rect(0, 0, width, height));
+		usedWidth = 0;
+		usedHeight = 0;
+	}
+
+	/**
+	 * Gets the right most edge of the packed rectangles
+	 */
+	public int GetUsedWidth()
+	{
+		return usedWidth;
+	}
+
+	/**
+	 * Gets the bottom most edge of the packed rectangles
+	 */
+	public int GetUsedHeight()
+	{
+		return usedHeight;
+	}
+
+	/**
+	 * Places a rectangle
+	 * @param position receives the x and y of the placed rectangle
+	 * @return false when the rectangle does not fit anymore
+	 */
+	public boolean Insert(int rectWidth, int rectHeight, int[] position)
+	{
+		// find the free rectangle that leaves the shortest side
+		Rect best = null;
+		int bestShort = Integer.MAX_VALUE;
+		int bestLong = Integer.MAX_VALUE;
+
+		for(int i = 0; i < freeRects.size(); i++)
+		{
+			Rect free = freeRects.get(i);
+			if(rectWidth > free.width || rectHeight > free.height)
+				continue;
+
+			int leftoverX = free.width - rectWidth;
+			int leftoverY = free.height - rectHeight;
+			int shortSide = Math.min(leftoverX, leftoverY);
+			int longSide = Math.max(leftoverX, leftoverY);
+
+			if(shortSide < bestShort || (shortSide == bestShort && longSide < bestLong))
+			{
+				best = free;
+				bestShort = shortSide;
+				bestLong = longSide;
+			}
+		}
+
+		if(best == null)
+			return false;
+
+		Rect used = new Rect(best.x, best.y, rectWidth, rectHeight);
+
+		// split every free rectangle the new one overlaps
+		for(int i = freeRects.size() - 1; i >= 0; i--)
+		{
+			if(SplitFreeRect(freeRects.get(i), used))
+				freeRects.remove(i);
+		}
+
+		freeRects.addAll(newFreeRects);
+		newFreeRects.clear();
+		PruneFreeRects();
+
+		usedWidth = Math.max(usedWidth, used.x + used.width);
+		usedHeight = Math.max(usedHeight, used.y + used.height);
+
+		position[0] = used.x;
+		position[1] = used.y;
+		return true;
+	}
+
+	/**
+	 * Adds the parts of a free rectangle around a used one
+	 * @return true when they overlap and the free rectangle has to be removed
+	 */
+	private boolean SplitFreeRect(Rect free, Rect used)
+	{
+		if(used.x >= free.x + free.width || used.x + used.width <= free.x ||
+				used.y >= free.y + free.height || used.y + used.height <= free.y)
+			return false;
+
+		// above and below the used rectangle
+		if(used.y > free.y)
+			newFreeRects.add(new Rect(free.x, free.y, free.width, used.y - free.y));
+
+		if(used.y + used.height < free.y + free.height)
+			newFreeRects.add(new Rect(free.x, used.y + used.height,
+					free.width, free.y + free.height - (used.y + used.height)));
+
+		// left and right of the used rectangle
+		if(used.x > free.x)
+			newFreeRects.add(new Rect(free.x, free.y, used.x - free.x, free.height));
+
+		if(used.x + used.width < free.x + free.width)
+			newFreeRects.add(new Rect(used.x + used.width, free.y,
+					free.x + free.width - (used.x + used.width), free.height));
+
+		return true;
+	}
+
+	/**
+	 * Removes the free rectangles that lie within another one
+	 */
+	private void PruneFreeRects()
+	{
+		for(int i = 0; i < freeRects.size(); i++)
+		{
+			for(int j = i + 1; j < freeRects.size(); j++)
+			{
+				if(freeRects.get(j).Contains(freeRects.get(i)))
+				{
+					freeRects.remove(i);
+					i--;
+					break;
+				}
+
+				if(freeRects.get(i).Contains(freeRects.get(j)))
+				{
+					freeRects.remove(j);
+					j--;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package wildrune.ouyaframework.graphics.atlas;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import wildrune.ouyaframework.graphics.basic.Texture2D;
+import wildrune.ouyaframework.graphics.basic.TextureRegion;
+import wildrune.ouyaframework.utils.interfaces.IDisposable;
+
+/**
+ * A set of texture pages with named regions on them
+ * Atlases loaded from the binary atlas format only know their regions by the hash of their name.
+ * @author Wildrune
+ *
+ */
+public class TextureAtlas implements IDisposable
+{
+	// binary atlas format
+	public final static int FILE_MAGIC = 0x41544C53; // "ATLS"
+	public final static int FILE_VERSION = 1;
+	public final static int REGION_SHORTS = 9;
+
+	// members
+	private final ArrayList<Texture2D> pages;
+	private final HashMap<String, TextureRegion> regions;
+
+	// regions by name hash, the hashes are sorted
+	private int[] regionHashes;
+	private TextureRegion[] hashedRegions;
+
+	public TextureAtlas()
+	{
+		pages = new ArrayList<Texture2D>();
+		regions = new HashMap<String, TextureRegion>();
+	}
+
+	@Override
+	public void Dispose()
+	{
+		for(int i = 0; i < pages.size(); i++)
+			pages.get(i).Dispose();
+
+		pages.clear();
+		regions.clear();
+		regionHashes = null;
+		hashedRegions = null;
+	}
+
+	/**
+	 * Adds a page, the atlas owns it from now on
+	 */
+	public void AddPage(Texture2D page)
+	{
+		pages.add(page);
+	}
+
+	public void AddRegion(String name, TextureRegion region)
+	{
+		regions.put(name, region);
+	}
+
+	/**
+	 * Sets the regions known by the hash of their name
+	 * @param hashes the String.hashCode of the names, sorted from low to high
+	 */
+	public void SetHashedRegions(int[] hashes, TextureRegion[] regions)
+	{
+		regionHashes = hashes;
+		hashedRegions = regions;
+	}
+
+	/**
+	 * Gets a region by its name
+	 * @return the region or null when it is not in the atlas
+	 */
+	public TextureRegion GetRegion(String name)
+	{
+		TextureRegion region = regions.get(name);
+		if(region == null && regionHashes != null)
+			return GetRegion(name.hashCode());
+
+		return region;
+	}
+
+	/**
+	 * Gets a region by the hash of its name
+	 * @return the region or null when it is not in the atlas
+	 */
+	public TextureRegion GetRegion(int nameHash)
+	{
+		if(regionHashes == null)
+			return null;
+
+		int index = Arrays.binarySearch(regionHashes, nameHash);
+		return index >= 0 ? hashedRegions[index] : null;
+	}
+
+	public int GetPageCount()
+	{
+		return pages.size();
+	}
+
+	public Texture2D GetPage(int index)
+	{
+		return pages.get(index);
+	}
+
+	public int GetRegionCount()
+	{
+		return regions.size() + (regionHashes != null ? regionHashes.length : 0);
+	}
+}
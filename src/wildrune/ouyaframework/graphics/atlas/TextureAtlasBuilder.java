@@ -0,0 +1,255 @@
+package wildrune.ouyaframework.graphics.atlas;
+
+import java.util.ArrayList;
+
+import wildrune.ouyaframework.graphics.basic.Texture2D;
+import wildrune.ouyaframework.graphics.basic.TextureRegion;
+import wildrune.ouyaframework.graphics.states.SamplerState;
+import wildrune.ouyaframework.math.RuneMath;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.Log;
+
+/**
+ * Packs bitmaps into as few power of two texture pages as possible
+ * Sprites are padded from each other and their edge pixels are extruded,
+ * so filtering never samples a neighbouring sprite.
+ * @author Wildrune
+ *
+ */
+public class TextureAtlasBuilder
+{
+	// constants
+	private final static String LOG_TAG = "AtlasBuilder";
+
+	// members
+	private final int maxPageSize;
+	private final int padding;
+	private final int extrude;
+	private final ArrayList<String> names;
+	private final ArrayList<Bitmap> bitmaps;
+	private SamplerState samplerState;
+
+	/**
+	 * Creates an atlas builder
+	 * @param maxPageSize the maximum width and height of a page, a power of two
+	 * @param padding the empty pixels between sprites
+	 * @param extrude the amount of times the edge pixels are repeated around a sprite
+	 */
+	public TextureAtlasBuilder(int maxPageSize, int padding, int extrude)
+	{
+		this.maxPageSize = maxPageSize;
+		this.padding = padding;
+		this.extrude = extrude;
+
+		names = new ArrayList<String>();
+		bitmaps = new ArrayList<Bitmap>();
+		samplerState = SamplerState.LinearClamp;
+	}
+
+	public void SetSamplerState(SamplerState state)
+	{
+		samplerState = state;
+	}
+
+	/**
+	 * Adds a bitmap to pack
+	 * @param name the name to find the region with in the atlas
+	 */
+	public void Add(String name, Bitmap bitmap)
+	{
+		names.add(name);
+		bitmaps.add(bitmap);
+	}
+
+	/**
+	 * Packs all added bitmaps and creates the pages
+	 * @param recycleBitmaps recycles the added bitmaps after they are packed
+	 */
+	public TextureAtlas Build(boolean recycleBitmaps)
+	{
+		TextureAtlas atlas = new TextureAtlas();
+		int count = bitmaps.size();
+		int border = extrude * 2 + padding;
+
+		// biggest bitmaps first
+		int[] order = new int[count];
+		for(int i = 0; i < count; i++)
+			order[i] = i;
+
+		for(int i = 1; i < count; i++)
+		{
+			int item = order[i];
+			int size = GetPackSize(bitmaps.get(item));
+			int j = i - 1;
+			while(j >= 0 && GetPackSize(bitmaps.get(order[j])) < size)
+			{
+				order[j + 1] = order[j];
+				j--;
+			}
+
+			order[j + 1] = item;
+		}
+
+		// fill pages until everything is placed, a page of -1 means not placed yet
+		MaxRectsPacker packer = new MaxRectsPacker(maxPageSize, maxPageSize);
+		int[] itemPage = new int[count];
+		int[] pageX = new int[count];
+		int[] pageY = new int[count];
+		int[] position = new int[2];
+		int remaining = count;
+		int page = 0;
+
+		for(int i = 0; i < count; i++)
+			itemPage[i] = -1;
+
+		while(remaining > 0)
+		{
+			packer.Reset();
+			int pageCount = 0;
+
+			for(int i = 0; i < count; i++)
+			{
+				int item = order[i];
+				Bitmap bitmap = bitmaps.get(item);
+				if(itemPage[item] != -1 ||
+						!packer.Insert(bitmap.getWidth() + border, bitmap.getHeight() + border, position))
+					continue;
+
+				itemPage[item] = page;
+				pageX[item] = position[0];
+				pageY[item] = position[1];
+				pageCount++;
+			}
+
+			// the rest does not even fit on an empty page
+			if(pageCount == 0)
+			{
+				for(int i = 0; i < count; i++)
+				{
+					if(itemPage[i] == -1)
+						Log.e(LOG_TAG, "Bitmap too big for atlas page: " + names.get(i));
+				}
+
+				break;
+			}
+
+			CreatePage(atlas, packer, page, itemPage, pageX, pageY);
+			remaining -= pageCount;
+			page++;
+		}
+
+		if(recycleBitmaps)
+		{
+			for(int i = 0; i < count; i++)
+				bitmaps.get(i).recycle();
+		}
+
+		names.clear();
+		bitmaps.clear();
+		return atlas;
+	}
+
+	/**
+	 * Draws the bitmaps placed on a page and uploads it
+	 */
+	private void CreatePage(TextureAtlas atlas, MaxRectsPacker packer, int page, int[] itemPage, int[] pageX, int[] pageY)
+	{
+		int width = RuneMath.NextPower2(packer.GetUsedWidth());
+		int height = RuneMath.NextPower2(packer.GetUsedHeight());
+
+		Bitmap pageBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		pageBitmap.eraseColor(0);
+		Canvas canvas = new Canvas(pageBitmap);
+
+		for(int i = 0; i < itemPage.length; i++)
+		{
+			if(itemPage[i] != page)
+				continue;
+
+			Bitmap bitmap = bitmaps.get(i);
+			canvas.drawBitmap(bitmap, pageX[i] + extrude, pageY[i] + extrude, null);
+			Extrude(pageBitmap, bitmap, pageX[i] + extrude, pageY[i] + extrude);
+		}
+
+		Texture2D texture = new Texture2D();
+		if(!texture.Create(pageBitmap, false, samplerState))
+		{
+			Log.e(LOG_TAG, "COULD NOT CREATE ATLAS PAGE!");
+			pageBitmap.recycle();
+			return;
+		}
+
+		pageBitmap.recycle();
+		atlas.AddPage(texture);
+
+		// the regions point at the sprites without their border
+		for(int i = 0; i < itemPage.length; i++)
+		{
+			if(itemPage[i] != page)
+				continue;
+
+			Bitmap bitmap = bitmaps.get(i);
+			atlas.AddRegion(names.get(i), new TextureRegion(texture,
+					pageX[i] + extrude, pageY[i] + extrude,
+					bitmap.getWidth(), bitmap.getHeight()));
+		}
+	}
+
+	/**
+	 * Repeats the edge pixels of a bitmap around it on the page
+	 */
+	private void Extrude(Bitmap page, Bitmap bitmap, int x, int y)
+	{
+		int e = extrude;
+		if(e <= 0)
+			return;
+
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+
+		// top and bottom rows
+		int[] row = new int[width];
+		bitmap.getPixels(row, 0, width, 0, 0, width, 1);
+		for(int i = 1; i <= e; i++)
+			page.setPixels(row, 0, width, x, y - i, width, 1);
+
+		bitmap.getPixels(row, 0, width, 0, height - 1, width, 1);
+		for(int i = 1; i <= e; i++)
+			page.setPixels(row, 0, width, x, y + height - 1 + i, width, 1);
+
+		// left and right columns
+		int[] column = new int[height];
+		bitmap.getPixels(column, 0, 1, 0, 0, 1, height);
+		for(int i = 1; i <= e; i++)
+			page.setPixels(column, 0, 1, x - i, y, 1, height);
+
+		bitmap.getPixels(column, 0, 1, width - 1, 0, 1, height);
+		for(int i = 1; i <= e; i++)
+			page.setPixels(column, 0, 1, x + width - 1 + i, y, 1, height);
+
+		// corners
+		int[] corner = new int[e * e];
+		FillCorner(page, corner, bitmap.getPixel(0, 0), x - e, y - e);
+		FillCorner(page, corner, bitmap.getPixel(width - 1, 0), x + width, y - e);
+		FillCorner(page, corner, bitmap.getPixel(0, height - 1), x - e, y + height);
+		FillCorner(page, corner, bitmap.getPixel(width - 1, height - 1), x + width, y + height);
+	}
+
+	private void FillCorner(Bitmap page, int[] corner, int color, int x, int y)
+	{
+		for(int i = 0; i < corner.length; i++)
+			corner[i] = color;
+
+		page.setPixels(corner, 0, extrude, x, y, extrude, extrude);
+	}
+
+	/**
+	 * The size used to order the bitmaps
+	 */
+	private static int GetPackSize(Bitmap bitmap)
+	{
+		return Math.max(bitmap.getWidth(), bitmap.getHeight());
+	}
+}
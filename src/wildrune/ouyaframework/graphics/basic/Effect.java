@@ -0,0 +1,278 @@
+package wildrune.ouyaframework.graphics.basic;
+
+import java.util.HashMap;
+
+import wildrune.ouyaframework.utils.interfaces.IDisposable;
+import android.util.Log;
+
+/**
+ * Wraps a shader program with cached attribute and uniform locations
+ * Parameter values are only send to the GPU when they changed, and only when
+ * the effect is applied so the program is bound at that time.
+ * NOT THREAD SAFE
+ * @author Wildrune
+ *
+ */
+public class Effect implements IDisposable
+{
+	// constants
+	private final static String LOG_TAG = "Effect";
+	private final static int initialParameterCount = 8;
+
+	// members
+	private final ShaderProgram program;
+	private final HashMap<String, Parameter> parameters;
+	private final HashMap<String, Integer> attributes;
+	private Parameter[] parameterList;
+	private int parameterCount;
+
+	/**
+	 * Creates an effect for an already linked program
+	 */
+	public Effect(ShaderProgram program)
+	{
+		this.program = program;
+		parameters = new HashMap<String, Parameter>();
+		attributes = new HashMap<String, Integer>();
+		parameterList = new Parameter[initialParameterCount];
+		parameterCount = 0;
+	}
+
+	/**
+	 * Creates an effect from shader sources
+	 */
+	public Effect(String vertexShader, String fragmentShader)
+	{
+		this(new ShaderProgram());
+
+		if(!program.Create())
+			Log.d(LOG_TAG, "Could not create shaderProgram");
+
+		if(!program.LinkShaders(vertexShader, fragmentShader))
+			Log.d(LOG_TAG, "Could not link shaderProgram");
+	}
+
+	@Override
+	public void Dispose()
+	{
+		program.Dispose();
+		parameters.clear();
+		attributes.clear();
+		parameterCount = 0;
+	}
+
+	public ShaderProgram GetProgram()
+	{
+		return program;
+	}
+
+	/**
+	 * Gets the location of an attribute, resolved once per name
+	 * @return the location or -1 if the program does not have the attribute
+	 */
+	public int GetAttribLocation(String name)
+	{
+		Integer location = attributes.get(name);
+		if(location == null)
+		{
+			location = program.GetAttribLocation(name);
+			attributes.put(name, location);
+		}
+
+		return location;
+	}
+
+	/**
+	 * Gets a parameter for a uniform, resolved once per name
+	 * Keep the returned parameter around to avoid the lookup every frame.
+	 * Parameters of uniforms the program does not have can be set but are never send.
+	 */
+	public Parameter GetParameter(String name)
+	{
+		Parameter parameter = parameters.get(name);
+		if(parameter == null)
+		{
+			parameter = new Parameter(program.GetUniformLocation(name));
+			parameters.put(name, parameter);
+
+			// keep a list for applying without iterators
+			if(parameterCount >= parameterList.length)
+			{
+				Parameter[] newList = new Parameter[parameterList.length * 2];
+				System.arraycopy(parameterList, 0, newList, 0, parameterCount);
+				parameterList = newList;
+			}
+			parameterList[parameterCount++] = parameter;
+		}
+
+		return parameter;
+	}
+
+	/**
+	 * Binds the program and sends the changed parameters
+	 */
+	public void Apply()
+	{
+		program.Bind();
+
+		for(int i = 0; i < parameterCount; i++)
+			parameterList[i].Upload(program);
+	}
+
+	/**
+	 * A uniform of the effect and the last value set to it
+	 */
+	public static final class Parameter
+	{
+		// value types
+		private final static int TYPE_NONE = 0;
+		private final static int TYPE_FLOAT = 1;
+		private final static int TYPE_VEC2 = 2;
+		private final static int TYPE_VEC3 = 3;
+		private final static int TYPE_VEC4 = 4;
+		private final static int TYPE_MATRIX = 5;
+		private final static int TYPE_INT = 6;
+		private final static int TYPE_INT_ARRAY = 7;
+
+		private final int location;
+		private final float[] values;
+		private int[] intValues;
+		private int type;
+		private boolean dirty;
+
+		Parameter(int location)
+		{
+			this.location = location;
+			values = new float[16];
+			intValues = new int[1];
+			type = TYPE_NONE;
+			dirty = false;
+		}
+
+		public int GetLocation()
+		{
+			return location;
+		}
+
+		public void SetValue(float x)
+		{
+			SetFloats(TYPE_FLOAT, x, 0, 0, 0);
+		}
+
+		public void SetValue(float x, float y)
+		{
+			SetFloats(TYPE_VEC2, x, y, 0, 0);
+		}
+
+		public void SetValue(float x, float y, float z)
+		{
+			SetFloats(TYPE_VEC3, x, y, z, 0);
+		}
+
+		public void SetValue(float x, float y, float z, float w)
+		{
+			SetFloats(TYPE_VEC4, x, y, z, w);
+		}
+
+		public void SetValue(Color color)
+		{
+			SetFloats(TYPE_VEC4, color.r, color.g, color.b, color.a);
+		}
+
+		/**
+		 * Sets a 4x4 matrix
+		 */
+		public void SetValue(float[] matrix4)
+		{
+			boolean changed = (type != TYPE_MATRIX);
+			for(int i = 0; i < 16 && !changed; i++)
+				changed = (values[i] != matrix4[i]);
+
+			if(changed)
+			{
+				System.arraycopy(matrix4, 0, values, 0, 16);
+				type = TYPE_MATRIX;
+				dirty = true;
+			}
+		}
+
+		public void SetValue(int value)
+		{
+			if(type != TYPE_INT || intValues[0] != value)
+			{
+				intValues[0] = value;
+				type = TYPE_INT;
+				dirty = true;
+			}
+		}
+
+		/**
+		 * Sets an int array, like an array of samplers
+		 */
+		public void SetValue(int[] data)
+		{
+			boolean changed = (type != TYPE_INT_ARRAY || intValues.length != data.length);
+			for(int i = 0; i < data.length && !changed; i++)
+				changed = (intValues[i] != data[i]);
+
+			if(changed)
+			{
+				if(intValues.length != data.length)
+					intValues = new int[data.length];
+
+				System.arraycopy(data, 0, intValues, 0, data.length);
+				type = TYPE_INT_ARRAY;
+				dirty = true;
+			}
+		}
+
+		private void SetFloats(int newType, float x, float y, float z, float w)
+		{
+			if(type == newType && values[0] == x && values[1] == y && values[2] == z && values[3] == w)
+				return;
+
+			values[0] = x;
+			values[1] = y;
+			values[2] = z;
+			values[3] = w;
+			type = newType;
+			dirty = true;
+		}
+
+		/**
+		 * Sends the value if it changed, the program must be bound
+		 */
+		void Upload(ShaderProgram program)
+		{
+			if(!dirty || location < 0)
+				return;
+
+			switch(type)
+			{
+				case TYPE_FLOAT:
+					program.SetUniform(location, values[0]);
+					break;
+				case TYPE_VEC2:
+					program.SetUniform(location, values[0], values[1]);
+					break;
+				case TYPE_VEC3:
+					program.SetUniform(location, values[0], values[1], values[2]);
+					break;
+				case TYPE_VEC4:
+					program.SetUniform(location, values[0], values[1], values[2], values[3]);
+					break;
+				case TYPE_MATRIX:
+					program.SetUniform(location, values);
+					break;
+				case TYPE_INT:
+					program.SetUniform(location, intValues[0]);
+					break;
+				case TYPE_INT_ARRAY:
+					program.SetUniform(location, intValues);
+					break;
+			}
+
+			dirty = false;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package wildrune.ouyaframework.graphics.basic;
+
+/**
+ * A region of a texture split in 3x3 parts by its borders
+ * The corners keep their size, the edges and center stretch.
+ * The texture coordinates are normalized once when the patch is created.
+ * @author Wildrune
+ *
+ */
+public class NinePatch
+{
+	// members
+	public final Texture2D texture;
+	public final float left;
+	public final float top;
+	public final float right;
+	public final float bottom;
+
+	// normalized texture coordinates of the 4 vertical and 4 horizontal edges
+	public final float[] u;
+	public final float[] v;
+
+	/**
+	 * Creates a nine patch
+	 * @param texture the texture to use
+	 * @param source the region of the texture in pixels
+	 * @param left the width of the left border in pixels
+	 * @param top the height of the top border in pixels
+	 * @param right the width of the right border in pixels
+	 * @param bottom the height of the bottom border in pixels
+	 */
+	public NinePatch(Texture2D texture, Rectangle source, float left, float top, float right, float bottom)
+	{
+		this.texture = texture;
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+
+		float invWidth = 1.0f / texture.width;
+		float invHeight = 1.0f / texture.height;
+
+		u = new float[4];
+		u[0] = source.x * invWidth;
+		u[1] = (source.x + left) * invWidth;
+		u[2] = (source.x + source.width - right) * invWidth;
+		u[3] = (source.x + source.width) * invWidth;
+
+		v = new float[4];
+		v[0] = source.y * invHeight;
+		v[1] = (source.y + top) * invHeight;
+		v[2] = (source.y + source.height - bottom) * invHeight;
+		v[3] = (source.y + source.height) * invHeight;
+	}
+
+	/**
+	 * Creates a nine patch from a whole texture
+	 */
+	public NinePatch(Texture2D texture, float left, float top, float right, float bottom)
+	{
+		this(texture, new Rectangle(0, 0, texture.width, texture.height), left, top, right, bottom);
+	}
+}
@@ -0,0 +1,131 @@
+package wildrune.ouyaframework.graphics.basic;
+
+import static android.opengl.GLES20.*;
+
+import wildrune.ouyaframework.graphics.states.SamplerState;
+import android.util.Log;
+
+/**
+ * A texture that can be rendered to through a framebuffer object
+ * Like everything rendered by GL the image is stored bottom up,
+ * so it has to be drawn flipped vertically, see SpriteBatch.DrawRenderTarget.
+ * @author Wildrune
+ *
+ */
+public class RenderTarget2D extends Texture2D
+{
+	private final static String LOG_TAG = "RenderTarget2D";
+
+	// this is used for retreiving handles without having to allocate new int's everytime
+	private final static int[] temp = new int[1];
+
+	/**
+	 * Data members
+	 */
+	public int framebufferHandle;
+	public int depthBufferHandle;
+
+	/**
+	 * Constructor
+	 */
+	public RenderTarget2D()
+	{
+		super();
+		framebufferHandle = 0;
+		depthBufferHandle = 0;
+	}
+
+	/**
+	 * Create the render target
+	 * @param width the width in pixels
+	 * @param height the height in pixels
+	 * @param depth if a depth buffer is attached
+	 * @param state the sampler state used when drawing the target
+	 */
+	public boolean Create(int width, int height, boolean depth, SamplerState state)
+	{
+		this.width = width;
+		this.height = height;
+
+		// create the color texture without data
+		glGenTextures(1, temp, 0);
+		if(temp[0] <= 0)
+		{
+			Log.d(LOG_TAG, "No valid texture handle could be retreived");
+			return false;
+		}
+
+		textureHandle = temp[0];
+		glBindTexture(GL_TEXTURE_2D, textureHandle);
+		glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, null);
+		samplerState = state;
+		samplerState.SetState();
+		glBindTexture(GL_TEXTURE_2D, 0);
+
+		// remember the bound framebuffer, a target can be created while another one is pushed
+		glGetIntegerv(GL_FRAMEBUFFER_BINDING, temp, 0);
+		int previousFramebuffer = temp[0];
+
+		// create the framebuffer
+		glGenFramebuffers(1, temp, 0);
+		framebufferHandle = temp[0];
+		glBindFramebuffer(GL_FRAMEBUFFER, framebufferHandle);
+		glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, textureHandle, 0);
+
+		// create the depth buffer
+		if(depth)
+		{
+			glGenRenderbuffers(1, temp, 0);
+			depthBufferHandle = temp[0];
+			glBindRenderbuffer(GL_RENDERBUFFER, depthBufferHandle);
+			glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH_COMPONENT16, width, height);
+			glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER, depthBufferHandle);
+			glBindRenderbuffer(GL_RENDERBUFFER, 0);
+		}
+
+		int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+		glBindFramebuffer(GL_FRAMEBUFFER, previousFramebuffer);
+		temp[0] = 0;
+
+		if(status != GL_FRAMEBUFFER_COMPLETE)
+		{
+			Log.e(LOG_TAG, "Framebuffer incomplete: " + status);
+			Dispose();
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks if a depth buffer is attached
+	 */
+	public boolean HasDepth()
+	{
+		return depthBufferHandle != 0;
+	}
+
+	/**
+	 * Dispose of this render target
+	 */
+	@Override
+	public void Dispose()
+	{
+		if(framebufferHandle != 0)
+		{
+			temp[0] = framebufferHandle;
+			glDeleteFramebuffers(1, temp, 0);
+			framebufferHandle = 0;
+		}
+
+		if(depthBufferHandle != 0)
+		{
+			temp[0] = depthBufferHandle;
+			glDeleteRenderbuffers(1, temp, 0);
+			depthBufferHandle = 0;
+		}
+
+		temp[0] = 0;
+		super.Dispose();
+	}
+}
@@ -2,6 +2,8 @@ package wildrune.ouyaframework.graphics.basic;
 
 import static android.opengl.GLES20.*;
 
+import wildrune.ouyaframework.graphics.RenderStats;
+import wildrune.ouyaframework.graphics.RenderStats.Stat;
 import android.util.Log;
 
 /**
@@ -164,7 +166,10 @@ public class ShaderProgram
 	public void Bind()
 	{
 		if(this.mProgramHandle > 0)
+		{
 			glUseProgram(mProgramHandle);
+			RenderStats.Increment(Stat.SHADER_BINDS);
+		}
 	}
 	
 	/**
@@ -236,6 +241,16 @@ public class ShaderProgram
 		glUniform3f(location, x, y, z);
 	}
 	
+	/**
+	 * Set 4 floats
+	 * @param location
+	 * @param x, y, z, w floats
+	 */
+	public void SetUniform(int location, float x, float y, float z, float w)
+	{
+		glUniform4f(location, x, y, z, w);
+	}
+	
 	/**
 	 * Set uniform int
 	 * @param location
@@ -245,4 +260,14 @@ public class ShaderProgram
 	{
 		glUniform1i(location, data);
 	}
+	
+	/**
+	 * Set uniform int array, like an array of samplers
+	 * @param location
+	 * @param data
+	 */
+	public void SetUniform(int location, int[] data)
+	{
+		glUniform1iv(location, data.length, data, 0);
+	}
 }
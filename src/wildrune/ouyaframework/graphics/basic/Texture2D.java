@@ -2,6 +2,8 @@ package wildrune.ouyaframework.graphics.basic;
 
 import static android.opengl.GLES20.*;
 
+import wildrune.ouyaframework.graphics.RenderStats;
+import wildrune.ouyaframework.graphics.RenderStats.Stat;
 import wildrune.ouyaframework.graphics.states.SamplerState;
 import wildrune.ouyaframework.utils.interfaces.IDisposable;
 import android.graphics.Bitmap;
@@ -122,6 +124,7 @@ public class Texture2D implements IDisposable, Comparable<Texture2D>
 		
 		// bind the texture itself
 		glBindTexture(GL_TEXTURE_2D, textureHandle);
+		RenderStats.Increment(Stat.TEXTURE_BINDS);
 	}
 	
 	/**
@@ -0,0 +1,78 @@
+package wildrune.ouyaframework.graphics.basic;
+
+/**
+ * A rectangular part of a texture, like a sprite in an atlas page
+ * The texture coordinates are normalized once when the region is created.
+ * Regions with their transparent border trimmed off keep the offset into their original size.
+ * @author Wildrune
+ *
+ */
+public class TextureRegion
+{
+	// members
+	public final Texture2D texture;
+	public final float x;
+	public final float y;
+	public final float width;
+	public final float height;
+
+	// normalized texture coordinates of the top left and bottom right corner
+	public final float u;
+	public final float v;
+	public final float u2;
+	public final float v2;
+
+	// placement of the trimmed region in the original image
+	public final float offsetX;
+	public final float offsetY;
+	public final float originalWidth;
+	public final float originalHeight;
+
+	/**
+	 * Creates a texture region
+	 * @param texture the texture to use
+	 * @param x the left of the region in pixels
+	 * @param y the top of the region in pixels
+	 * @param width the width of the region in pixels
+	 * @param height the height of the region in pixels
+	 */
+	public TextureRegion(Texture2D texture, float x, float y, float width, float height)
+	{
+		this(texture, x, y, width, height, 0, 0, width, height);
+	}
+
+	/**
+	 * Creates a trimmed texture region
+	 * @param offsetX the left of the region in the original image
+	 * @param offsetY the top of the region in the original image
+	 * @param originalWidth the width of the original image
+	 * @param originalHeight the height of the original image
+	 */
+	public TextureRegion(Texture2D texture, float x, float y, float width, float height,
+			float offsetX, float offsetY, float originalWidth, float originalHeight)
+	{
+		this.texture = texture;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+
+		u = x / texture.width;
+		v = y / texture.height;
+		u2 = (x + width) / texture.width;
+		v2 = (y + height) / texture.height;
+
+		this.offsetX = offsetX;
+		this.offsetY = offsetY;
+		this.originalWidth = originalWidth;
+		this.originalHeight = originalHeight;
+	}
+
+	/**
+	 * Creates a region covering a whole texture
+	 */
+	public TextureRegion(Texture2D texture)
+	{
+		this(texture, 0, 0, texture.width, texture.height);
+	}
+}
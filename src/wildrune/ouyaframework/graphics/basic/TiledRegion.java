@@ -0,0 +1,49 @@
+package wildrune.ouyaframework.graphics.basic;
+
+/**
+ * A region of a texture that is repeated to fill an area
+ * Tiles on the far edges are cropped instead of scaled.
+ * The texture coordinates are normalized once when the region is created.
+ * @author Wildrune
+ *
+ */
+public class TiledRegion
+{
+	// members
+	public final Texture2D texture;
+	public final float tileWidth;
+	public final float tileHeight;
+
+	// normalized texture coordinates of the tile and their size per pixel of the tile
+	public final float u;
+	public final float v;
+	public final float uPerPixel;
+	public final float vPerPixel;
+
+	/**
+	 * Creates a tiled region
+	 * @param texture the texture to use
+	 * @param source the region of the texture in pixels
+	 * @param tileWidth the width of a tile when drawn
+	 * @param tileHeight the height of a tile when drawn
+	 */
+	public TiledRegion(Texture2D texture, Rectangle source, float tileWidth, float tileHeight)
+	{
+		this.texture = texture;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+
+		u = source.x / texture.width;
+		v = source.y / texture.height;
+		uPerPixel = (source.width / texture.width) / tileWidth;
+		vPerPixel = (source.height / texture.height) / tileHeight;
+	}
+
+	/**
+	 * Creates a tiled region drawn at the size of the source
+	 */
+	public TiledRegion(Texture2D texture, Rectangle source)
+	{
+		this(texture, source, source.width, source.height);
+	}
+}
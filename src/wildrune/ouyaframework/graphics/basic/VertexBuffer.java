@@ -10,6 +10,8 @@ import java.nio.IntBuffer;
 import android.opengl.GLUtils;
 import android.util.Log;
 
+import wildrune.ouyaframework.graphics.RenderStats;
+import wildrune.ouyaframework.graphics.RenderStats.Stat;
 import wildrune.ouyaframework.graphics.utils.BufferUtils;
 import wildrune.ouyaframework.utils.interfaces.IDisposable;
 
@@ -27,8 +29,9 @@ public class VertexBuffer implements IDisposable
 	// this is used for retreiving handles without having to allocate new int's everytime
 	private final static IntBuffer tempHandle = BufferUtils.newIntBuffer(1);
 	
-	// private members
+	// private members, both buffers are views on the same memory
 	private final FloatBuffer vertexBuffer;
+	private final IntBuffer vertexIntBuffer;
 	private final boolean isStatic;
 	private final int usage;
 	private int bufferHandle;
@@ -45,11 +48,12 @@ public class VertexBuffer implements IDisposable
 		this.bufferHandle = 0;
 		this.bufferSize = 0;
 		
-		// create the float buffer
-		vertexBuffer = ByteBuffer
+		// create the float buffer and an int view for packed vertex data
+		ByteBuffer byteBuffer = ByteBuffer
 				.allocateDirect(bufferSize * BYTES_PER_FLOAT)
-				.order(ByteOrder.nativeOrder())
-				.asFloatBuffer();
+				.order(ByteOrder.nativeOrder());
+		vertexBuffer = byteBuffer.asFloatBuffer();
+		vertexIntBuffer = byteBuffer.asIntBuffer();
 	}
 	
 	
@@ -107,6 +111,28 @@ public class VertexBuffer implements IDisposable
 		BufferUtils.CopyFloats(vertexData, offset, vertexBuffer, length);
 	}
 	
+	/**
+	 * Sets the vertices array for this buffer from packed 32 bit words
+	 * Floats can be put in with Float.floatToRawIntBits
+	 * @param vertexData the data set for this buffer
+	 */
+	public void SetData(int bufferOffset, int[] vertexData, int offset, int length)
+	{
+		int endOffset = bufferOffset + length;
+		if(endOffset  > vertexIntBuffer.limit())
+		{
+			Log.d(LOG_TAG, "Size to write is to big for the vertexBuffer");
+			return;
+		}
+				
+		// both views share the size in 32 bit words
+		bufferSize += length;
+		vertexIntBuffer.position(bufferOffset);
+		// int buffers have a bulk put, no native copy needed
+		vertexIntBuffer.put(vertexData, offset, length);
+		vertexIntBuffer.clear();
+	}
+	
 	/**
 	 * Resolves this buffer
 	 */
@@ -121,6 +147,9 @@ public class VertexBuffer implements IDisposable
 		else
 			glBufferSubData(GL_ARRAY_BUFFER, 0, bufferSize * BYTES_PER_FLOAT, vertexBuffer);
 		
+		RenderStats.Increment(Stat.BUFFER_UPLOADS);
+		RenderStats.Add(Stat.VERTEX_BYTES, bufferSize * BYTES_PER_FLOAT);
+		
 		vertexBuffer.clear();
 		bufferSize = 0;
 		
@@ -154,9 +183,23 @@ public class VertexBuffer implements IDisposable
 	 * @param attribLocation the location of the attribute in the shader
 	 */
 	public void SetVertexAttribPointer(int dataOffsetFloats, int attribLocation, int componentCount, int strideBytes)
+	{
+		SetVertexAttribPointer(dataOffsetFloats, attribLocation, componentCount, GL_FLOAT, false, strideBytes);
+	}
+	
+	/**
+	 * Sets a vertex atribute with a specific component type for this vertex buffer
+	 * @param dataOffsetBytes the offset of the attribute in the vertex in bytes
+	 * @param attribLocation the location of the attribute in the shader
+	 * @param componentCount the amount of components of the attribute
+	 * @param type the GL type of a component, like GL_FLOAT or GL_UNSIGNED_BYTE
+	 * @param normalized if integer components should be mapped to [0, 1] or [-1, 1]
+	 * @param strideBytes the size of a single vertex in bytes
+	 */
+	public void SetVertexAttribPointer(int dataOffsetBytes, int attribLocation, int componentCount, int type, boolean normalized, int strideBytes)
 	{
 	    // set vertex attribute
-		glVertexAttribPointer(attribLocation, componentCount, GL_FLOAT, false, strideBytes, dataOffsetFloats);
+		glVertexAttribPointer(attribLocation, componentCount, type, normalized, strideBytes, dataOffsetBytes);
 	    glEnableVertexAttribArray(attribLocation);
 	}
 
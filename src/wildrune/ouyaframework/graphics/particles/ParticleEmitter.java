@@ -0,0 +1,260 @@
+package wildrune.ouyaframework.graphics.particles;
+
+import java.util.Random;
+
+import wildrune.ouyaframework.graphics.SpriteBatch;
+import wildrune.ouyaframework.graphics.basic.Color;
+import wildrune.ouyaframework.graphics.basic.Rectangle;
+import wildrune.ouyaframework.graphics.basic.Texture2D;
+import wildrune.ouyaframework.math.RuneMath;
+
+/**
+ * Emits and updates particles stored in primitive arrays
+ * Dead particles are replaced by the last live particle, so the live ones stay packed.
+ * The arrays only grow when the emitter is initialized with a bigger capacity.
+ * @author Wildrune
+ *
+ */
+public class ParticleEmitter
+{
+	// members
+	public float x;
+	public float y;
+
+	private ParticleEmitterConfig config;
+	private Texture2D texture;
+	private Rectangle source;
+	private final Random random;
+
+	// particle data, age goes from 0 to 1 over the life of a particle
+	private float[] positionX;
+	private float[] positionY;
+	private float[] velocityX;
+	private float[] velocityY;
+	private float[] age;
+	private float[] ageSpeed;
+	private float[] rotation;
+	private float[] rotationSpeed;
+	private float[] size;
+	private float[] color;
+	private int count;
+	private int capacity;
+
+	private float emitAccumulator;
+	private float elapsed;
+	private boolean emitting;
+
+	/**
+	 * Creates an empty emitter, used by the pool
+	 */
+	public ParticleEmitter()
+	{
+		random = new Random();
+		capacity = 0;
+		count = 0;
+	}
+
+	/**
+	 * Sets up the emitter for a config, grows the particle arrays when needed
+	 */
+	public void Init(ParticleEmitterConfig config, Texture2D texture, Rectangle source, float x, float y)
+	{
+		this.config = config;
+		this.texture = texture;
+		this.source = source;
+		this.x = x;
+		this.y = y;
+
+		if(config.capacity > capacity)
+		{
+			capacity = config.capacity;
+			positionX = new float[capacity];
+			positionY = new float[capacity];
+			velocityX = new float[capacity];
+			velocityY = new float[capacity];
+			age = new float[capacity];
+			ageSpeed = new float[capacity];
+			rotation = new float[capacity];
+			rotationSpeed = new float[capacity];
+			size = new float[capacity];
+			color = new float[capacity * 4];
+		}
+
+		count = 0;
+		emitAccumulator = 0.0f;
+		elapsed = 0.0f;
+		emitting = true;
+
+		if(config.burst > 0)
+			Emit(config.burst);
+	}
+
+	/**
+	 * Stops emitting new particles, the live ones keep going
+	 */
+	public void Stop()
+	{
+		emitting = false;
+	}
+
+	public boolean IsEmitting()
+	{
+		return emitting;
+	}
+
+	/**
+	 * Checks if the emitter stopped and has no live particles left
+	 */
+	public boolean IsFinished()
+	{
+		return !emitting && count == 0;
+	}
+
+	public int GetParticleCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Emits an amount of particles at once
+	 */
+	public void Emit(int amount)
+	{
+		ParticleEmitterConfig cfg = config;
+		Random rand = random;
+		int end = Math.min(count + amount, Math.min(capacity, cfg.capacity));
+
+		for(int i = count; i < end; i++)
+		{
+			float angle = (cfg.angle + (rand.nextFloat() - 0.5f) * cfg.spread) * RuneMath.TORAD;
+			float speed = cfg.speedMin + rand.nextFloat() * (cfg.speedMax - cfg.speedMin);
+			float life = cfg.lifeMin + rand.nextFloat() * (cfg.lifeMax - cfg.lifeMin);
+
+			positionX[i] = x;
+			positionY[i] = y;
+			velocityX[i] = (float) Math.cos(angle) * speed;
+			velocityY[i] = (float) Math.sin(angle) * speed;
+			age[i] = 0.0f;
+			ageSpeed[i] = 1.0f / Math.max(life, RuneMath.EPSILONH);
+			rotation[i] = rand.nextFloat() * 360.0f;
+			rotationSpeed[i] = cfg.rotationSpeedMin + rand.nextFloat() * (cfg.rotationSpeedMax - cfg.rotationSpeedMin);
+			size[i] = cfg.sizeStart;
+
+			int colorOffset = i * 4;
+			color[colorOffset] = cfg.colorStart.r;
+			color[colorOffset + 1] = cfg.colorStart.g;
+			color[colorOffset + 2] = cfg.colorStart.b;
+			color[colorOffset + 3] = cfg.colorStart.a;
+		}
+
+		if(end > count)
+			count = end;
+	}
+
+	/**
+	 * Emits new particles and moves, ages and removes the live ones
+	 */
+	public void Update(float dt)
+	{
+		ParticleEmitterConfig cfg = config;
+
+		// emit new particles
+		if(emitting)
+		{
+			elapsed += dt;
+			emitAccumulator += cfg.rate * dt;
+
+			int amount = (int) emitAccumulator;
+			emitAccumulator -= amount;
+			Emit(amount);
+
+			if(cfg.duration >= 0.0f && elapsed >= cfg.duration)
+				emitting = false;
+		}
+
+		// values shared by all particles
+		float gravityX = cfg.gravityX * dt;
+		float gravityY = cfg.gravityY * dt;
+		float damping = Math.max(0.0f, 1.0f - cfg.damping * dt);
+		float sizeStart = cfg.sizeStart;
+		float sizeDelta = cfg.sizeEnd - sizeStart;
+		Color start = cfg.colorStart;
+		Color end = cfg.colorEnd;
+		float rDelta = end.r - start.r;
+		float gDelta = end.g - start.g;
+		float bDelta = end.b - start.b;
+		float aDelta = end.a - start.a;
+
+		float[] posX = positionX;
+		float[] posY = positionY;
+		float[] velX = velocityX;
+		float[] velY = velocityY;
+		float[] ages = age;
+		float[] colors = color;
+
+		int i = 0;
+		int live = count;
+		while(i < live)
+		{
+			float a = ages[i] + ageSpeed[i] * dt;
+
+			// replace a dead particle by the last one and look at it again
+			if(a >= 1.0f)
+			{
+				live--;
+				MoveParticle(live, i);
+				continue;
+			}
+
+			ages[i] = a;
+
+			float vx = (velX[i] + gravityX) * damping;
+			float vy = (velY[i] + gravityY) * damping;
+			velX[i] = vx;
+			velY[i] = vy;
+			posX[i] += vx * dt;
+			posY[i] += vy * dt;
+
+			rotation[i] += rotationSpeed[i] * dt;
+			size[i] = sizeStart + sizeDelta * a;
+
+			int colorOffset = i * 4;
+			colors[colorOffset] = start.r + rDelta * a;
+			colors[colorOffset + 1] = start.g + gDelta * a;
+			colors[colorOffset + 2] = start.b + bDelta * a;
+			colors[colorOffset + 3] = start.a + aDelta * a;
+
+			i++;
+		}
+
+		count = live;
+	}
+
+	/**
+	 * Queues all live particles in the spritebatch at once
+	 */
+	public void Draw(SpriteBatch batch, float depth)
+	{
+		if(count == 0)
+			return;
+
+		batch.DrawSprites(texture, source, positionX, positionY, size, rotation, color, count, depth);
+	}
+
+	/**
+	 * Copies a particle over another one
+	 */
+	private void MoveParticle(int from, int to)
+	{
+		positionX[to] = positionX[from];
+		positionY[to] = positionY[from];
+		velocityX[to] = velocityX[from];
+		velocityY[to] = velocityY[from];
+		age[to] = age[from];
+		ageSpeed[to] = ageSpeed[from];
+		rotation[to] = rotation[from];
+		rotationSpeed[to] = rotationSpeed[from];
+		size[to] = size[from];
+		System.arraycopy(color, from * 4, color, to * 4, 4);
+	}
+}
@@ -0,0 +1,138 @@
+package wildrune.ouyaframework.graphics.particles;
+
+import wildrune.ouyaframework.graphics.basic.Color;
+import android.util.Log;
+
+/**
+ * The settings of a particle emitter
+ * Can be parsed from text with one "key = value" per line, lines starting with # are ignored.
+ * Colors are written as 4 floats, like "colorStart = 1 0.5 0 1".
+ * @author Wildrune
+ *
+ */
+public class ParticleEmitterConfig
+{
+	// constants
+	private final static String LOG_TAG = "ParticleConfig";
+
+	// members
+	public int capacity = 256;
+	public float rate = 32.0f;
+	public int burst = 0;
+	public float duration = -1.0f;
+
+	public float lifeMin = 1.0f;
+	public float lifeMax = 1.0f;
+	public float speedMin = 50.0f;
+	public float speedMax = 50.0f;
+	public float angle = 270.0f;
+	public float spread = 360.0f;
+
+	public float gravityX = 0.0f;
+	public float gravityY = 0.0f;
+	public float damping = 0.0f;
+
+	public float sizeStart = 8.0f;
+	public float sizeEnd = 8.0f;
+	public float rotationSpeedMin = 0.0f;
+	public float rotationSpeedMax = 0.0f;
+
+	public final Color colorStart = new Color(1, 1, 1, 1);
+	public final Color colorEnd = new Color(1, 1, 1, 0);
+
+	/**
+	 * Parses a config from text, unknown keys are skipped
+	 */
+	public static ParticleEmitterConfig Parse(String text)
+	{
+		ParticleEmitterConfig config = new ParticleEmitterConfig();
+		String[] lines = text.split("\n");
+
+		for(int i = 0; i < lines.length; i++)
+		{
+			String line = lines[i].trim();
+			if(line.length() == 0 || line.startsWith("#"))
+				continue;
+
+			int split = line.indexOf('=');
+			if(split < 0)
+			{
+				Log.d(LOG_TAG, "Invalid line: " + line);
+				continue;
+			}
+
+			String key = line.substring(0, split).trim();
+			String value = line.substring(split + 1).trim();
+
+			try
+			{
+				config.Set(key, value);
+			}
+			catch(NumberFormatException e)
+			{
+				Log.d(LOG_TAG, "Invalid value for " + key + ": " + value);
+			}
+		}
+
+		return config;
+	}
+
+	/**
+	 * Sets a setting by its key
+	 */
+	private void Set(String key, String value)
+	{
+		if(key.equals("capacity"))
+			capacity = Integer.parseInt(value);
+		else if(key.equals("rate"))
+			rate = Float.parseFloat(value);
+		else if(key.equals("burst"))
+			burst = Integer.parseInt(value);
+		else if(key.equals("duration"))
+			duration = Float.parseFloat(value);
+		else if(key.equals("lifeMin"))
+			lifeMin = Float.parseFloat(value);
+		else if(key.equals("lifeMax"))
+			lifeMax = Float.parseFloat(value);
+		else if(key.equals("speedMin"))
+			speedMin = Float.parseFloat(value);
+		else if(key.equals("speedMax"))
+			speedMax = Float.parseFloat(value);
+		else if(key.equals("angle"))
+			angle = Float.parseFloat(value);
+		else if(key.equals("spread"))
+			spread = Float.parseFloat(value);
+		else if(key.equals("gravityX"))
+			gravityX = Float.parseFloat(value);
+		else if(key.equals("gravityY"))
+			gravityY = Float.parseFloat(value);
+		else if(key.equals("damping"))
+			damping = Float.parseFloat(value);
+		else if(key.equals("sizeStart"))
+			sizeStart = Float.parseFloat(value);
+		else if(key.equals("sizeEnd"))
+			sizeEnd = Float.parseFloat(value);
+		else if(key.equals("rotationSpeedMin"))
+			rotationSpeedMin = Float.parseFloat(value);
+		else if(key.equals("rotationSpeedMax"))
+			rotationSpeedMax = Float.parseFloat(value);
+		else if(key.equals("colorStart"))
+			ParseColor(value, colorStart);
+		else if(key.equals("colorEnd"))
+			ParseColor(value, colorEnd);
+		else
+			Log.d(LOG_TAG, "Unknown key: " + key);
+	}
+
+	private static void ParseColor(String value, Color color)
+	{
+		String[] parts = value.split("\\s+");
+		if(parts.length != 4)
+			throw new NumberFormatException();
+
+		color.r = Float.parseFloat(parts[0]);
+		color.g = Float.parseFloat(parts[1]);
+		color.b = Float.parseFloat(parts[2]);
+		color.a = Float.parseFloat(parts[3]);
+	}
+}
@@ -0,0 +1,115 @@
+package wildrune.ouyaframework.graphics.particles;
+
+import java.util.ArrayList;
+
+import wildrune.ouyaframework.graphics.SpriteBatch;
+import wildrune.ouyaframework.graphics.basic.Rectangle;
+import wildrune.ouyaframework.graphics.basic.Texture2D;
+import wildrune.ouyaframework.utils.ObjectPool;
+
+/**
+ * Keeps track of the active particle emitters
+ * Finished emitters go back to a pool, so their particle arrays get reused.
+ * @author Wildrune
+ *
+ */
+public class ParticleSystem
+{
+	// members
+	private final ObjectPool<ParticleEmitter> emitterPool;
+	private final ArrayList<ParticleEmitter> emitters;
+
+	/**
+	 * Creates a particle system
+	 * @param emitterCapacity the expected amount of active emitters
+	 */
+	public ParticleSystem(int emitterCapacity)
+	{
+		emitterPool = new ObjectPool<ParticleEmitter>(ParticleEmitter.class);
+		emitters = new ArrayList<ParticleEmitter>(emitterCapacity);
+	}
+
+	/**
+	 * Fills the pool with emitters that already have their arrays for a config
+	 */
+	public void Preallocate(ParticleEmitterConfig config, int emitterCount)
+	{
+		for(int i = 0; i < emitterCount; i++)
+		{
+			ParticleEmitter emitter = new ParticleEmitter();
+			emitter.Init(config, null, null, 0, 0);
+			emitter.Stop();
+			emitterPool.Recycle(emitter);
+		}
+	}
+
+	/**
+	 * Starts a new emitter
+	 * @param source the region of the texture used by every particle
+	 * @return the emitter, can be moved or stopped while it is active
+	 */
+	public ParticleEmitter Spawn(ParticleEmitterConfig config, Texture2D texture, Rectangle source, float x, float y)
+	{
+		ParticleEmitter emitter = emitterPool.Get();
+		emitter.Init(config, texture, source, x, y);
+		emitters.add(emitter);
+
+		return emitter;
+	}
+
+	/**
+	 * Updates all emitters and recycles the finished ones
+	 */
+	public void Update(float dt)
+	{
+		for(int i = emitters.size() - 1; i >= 0; i--)
+		{
+			ParticleEmitter emitter = emitters.get(i);
+			emitter.Update(dt);
+
+			if(emitter.IsFinished())
+			{
+				// swap with the last emitter, the order does not matter
+				int last = emitters.size() - 1;
+				emitters.set(i, emitters.get(last));
+				emitters.remove(last);
+				emitterPool.Recycle(emitter);
+			}
+		}
+	}
+
+	/**
+	 * Queues the particles of all emitters in the spritebatch
+	 */
+	public void Draw(SpriteBatch batch, float depth)
+	{
+		for(int i = 0; i < emitters.size(); i++)
+			emitters.get(i).Draw(batch, depth);
+	}
+
+	/**
+	 * Gets the amount of live particles of all emitters
+	 */
+	public int GetParticleCount()
+	{
+		int total = 0;
+		for(int i = 0; i < emitters.size(); i++)
+			total += emitters.get(i).GetParticleCount();
+
+		return total;
+	}
+
+	/**
+	 * Stops and recycles all emitters
+	 */
+	public void Clear()
+	{
+		for(int i = 0; i < emitters.size(); i++)
+		{
+			emitters.get(i).Stop();
+			emitterPool.Recycle(emitters.get(i));
+		}
+
+		emitters.clear();
+	}
+}
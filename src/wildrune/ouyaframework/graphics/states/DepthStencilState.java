@@ -0,0 +1,96 @@
+package wildrune.ouyaframework.graphics.states;
+
+import static android.opengl.GLES20.*;
+
+public class DepthStencilState implements GraphicState
+{
+	// static common states
+	public final static DepthStencilState None;
+	public final static DepthStencilState Default;
+	public final static DepthStencilState DepthRead;
+
+	// initialize static common depth stencil states
+	static
+	{
+		None = new DepthStencilState(false, true, GL_LEQUAL);
+		Default = new DepthStencilState(true, true, GL_LEQUAL);
+		DepthRead = new DepthStencilState(true, false, GL_LEQUAL);
+	}
+
+	// data members
+	public boolean depthEnable;
+	public boolean depthWrite;
+	public int depthFunction;
+
+	public boolean stencilEnable;
+	public int stencilFunction;
+	public int stencilReference;
+	public int stencilMask;
+	public int stencilFail;
+	public int stencilDepthFail;
+	public int stencilPass;
+
+	/**
+	 * Initialize this depth state without stencil testing
+	 * @param depthEnable if depth testing is enabled
+	 * @param depthWrite if depth values are written
+	 * @param depthFunc the depth compare function, like GL_LEQUAL
+	 */
+	public DepthStencilState(boolean depthEnable, boolean depthWrite, int depthFunc)
+	{
+		this.depthEnable = depthEnable;
+		this.depthWrite = depthWrite;
+		this.depthFunction = depthFunc;
+
+		stencilEnable = false;
+		stencilFunction = GL_ALWAYS;
+		stencilReference = 0;
+		stencilMask = 0xFF;
+		stencilFail = GL_KEEP;
+		stencilDepthFail = GL_KEEP;
+		stencilPass = GL_KEEP;
+	}
+
+	/**
+	 * Sets the stencil test of this state
+	 * @param func the stencil compare function, like GL_EQUAL
+	 * @param ref the reference value to compare with
+	 * @param mask the mask applied to both the reference and the stored value
+	 * @param fail the operation when the stencil test fails
+	 * @param depthFail the operation when the depth test fails
+	 * @param pass the operation when both tests pass
+	 */
+	public void SetStencil(int func, int ref, int mask, int fail, int depthFail, int pass)
+	{
+		stencilEnable = true;
+		stencilFunction = func;
+		stencilReference = ref;
+		stencilMask = mask;
+		stencilFail = fail;
+		stencilDepthFail = depthFail;
+		stencilPass = pass;
+	}
+
+	@Override
+	public void SetState()
+	{
+		if(depthEnable)
+		{
+			glEnable(GL_DEPTH_TEST);
+			glDepthFunc(depthFunction);
+		}
+		else
+			glDisable(GL_DEPTH_TEST);
+
+		glDepthMask(depthWrite);
+
+		if(stencilEnable)
+		{
+			glEnable(GL_STENCIL_TEST);
+			glStencilFunc(stencilFunction, stencilReference, stencilMask);
+			glStencilOp(stencilFail, stencilDepthFail, stencilPass);
+		}
+		else
+			glDisable(GL_STENCIL_TEST);
+	}
+}
@@ -0,0 +1,391 @@
+package wildrune.ouyaframework.graphics.tilemap;
+
+import static android.opengl.GLES20.*;
+
+import wildrune.ouyaframework.graphics.Camera2D;
+import wildrune.ouyaframework.graphics.GraphicsSystem;
+import wildrune.ouyaframework.graphics.RenderStats;
+import wildrune.ouyaframework.graphics.RenderStats.Stat;
+import wildrune.ouyaframework.graphics.basic.*;
+import wildrune.ouyaframework.graphics.states.BlendState;
+import wildrune.ouyaframework.math.Mat4;
+import wildrune.ouyaframework.utils.interfaces.IDisposable;
+
+/**
+ * A layer of tiles baked into chunks with their own static vertex buffer
+ * Only chunks that are visible get drawn, and only chunks with changed tiles get rebuild.
+ * Animated tiles are moved through their frames in the vertex shader.
+ * @author Wildrune
+ *
+ */
+public class TileMap implements IDisposable
+{
+	// constants
+	public final static int CHUNK_SIZE = 32;
+	public final static short EMPTY = -1;
+
+	private final static int VERTEX_ELEMENTS = 5;
+	private final static int BYTES_PER_FLOAT = 4;
+	private final static int BYTES_PER_VERTEX = VERTEX_ELEMENTS * BYTES_PER_FLOAT;
+	private final static int verticesPerTile = 4;
+	private final static int indicesPerTile = 6;
+	private final static int tilesPerChunk = CHUNK_SIZE * CHUNK_SIZE;
+
+	// frame counter wraps at a multiple of every possible frame count
+	private final static int frameWrap = 720720;
+
+	// tilemap shaders
+	private final static String vShader =
+			"attribute vec2 a_position;" +
+			"attribute vec2 a_texcoord_one;" +
+			"attribute float a_frames;" +
+
+			"uniform mat4 uTransform;" +
+			"uniform float u_animFrame;" +
+			"uniform float u_frameStep;" +
+
+			"varying vec2 v_texcoord_one;" +
+
+			"void main()" +
+			"{" +
+				"gl_Position = uTransform * vec4(a_position, 0.0, 1.0);" +
+				"v_texcoord_one = a_texcoord_one + vec2(mod(u_animFrame, a_frames) * u_frameStep, 0.0);" +
+			"}";
+
+	private final static String fShader =
+			"precision mediump float;" +
+			"uniform sampler2D u_texture_one;" +
+			"varying vec2 v_texcoord_one;" +
+			"void main()" +
+			"{" +
+				"gl_FragColor = texture2D(u_texture_one, v_texcoord_one);" +
+			"}";
+
+	// a block of tiles with its own buffer
+	private final static class Chunk
+	{
+		VertexBuffer buffer;
+		int capacity;
+		int tileCount;
+		boolean dirty;
+	}
+
+	// members
+	public final TileSet tileSet;
+	public final int width;
+	public final int height;
+	public final float tileWidth;
+	public final float tileHeight;
+
+	private final short[] tiles;
+	private final Chunk[] chunks;
+	private final int chunksX;
+	private final int chunksY;
+	private final float[] chunkVertices;
+	private final IndexBuffer indexBuffer;
+
+	private final Effect effect;
+	private final Effect.Parameter matrixParameter;
+	private final Effect.Parameter frameParameter;
+	private final Effect.Parameter frameStepParameter;
+	private final Effect.Parameter textureParameter;
+	private final int aPosition;
+	private final int aTexCoord;
+	private final int aFrames;
+
+	private final GraphicsSystem graphics;
+	private BlendState blendState;
+	private float frameDuration;
+	private float animationTime;
+	private int animationFrame;
+	private int drawnChunkCount;
+
+	/**
+	 * Creates an empty tilemap
+	 * @param graphics the graphics system the states are set through
+	 * @param tileSet the tiles to use
+	 * @param width the width of the map in tiles
+	 * @param height the height of the map in tiles
+	 * @param tileWidth the width of a tile in the world
+	 * @param tileHeight the height of a tile in the world
+	 */
+	public TileMap(GraphicsSystem graphics, TileSet tileSet, int width, int height, float tileWidth, float tileHeight)
+	{
+		this.graphics = graphics;
+		this.tileSet = tileSet;
+		this.width = width;
+		this.height = height;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+
+		tiles = new short[width * height];
+		for(int i = 0; i < tiles.length; i++)
+			tiles[i] = EMPTY;
+
+		// create the chunks, their buffers are created when they are build
+		chunksX = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		chunksY = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		chunks = new Chunk[chunksX * chunksY];
+		for(int i = 0; i < chunks.length; i++)
+			chunks[i] = new Chunk();
+
+		chunkVertices = new float[tilesPerChunk * verticesPerTile * VERTEX_ELEMENTS];
+
+		// every chunk shares the same indices
+		short[] indices = new short[tilesPerChunk * indicesPerTile];
+		int offset = 0;
+		for(int i = 0; i < tilesPerChunk * verticesPerTile; i += verticesPerTile)
+		{
+			indices[offset++] = (short) i;
+			indices[offset++] = (short) (i + 1);
+			indices[offset++] = (short) (i + 2);
+
+			indices[offset++] = (short) (i + 1);
+			indices[offset++] = (short) (i + 3);
+			indices[offset++] = (short) (i + 2);
+		}
+
+		indexBuffer = new IndexBuffer(indices.length, true);
+		indexBuffer.SetData(0, indices, 0, indices.length);
+		indexBuffer.Create();
+		indexBuffer.Apply();
+
+		// create the effect
+		effect = new Effect(vShader, fShader);
+		matrixParameter = effect.GetParameter("uTransform");
+		frameParameter = effect.GetParameter("u_animFrame");
+		frameStepParameter = effect.GetParameter("u_frameStep");
+		textureParameter = effect.GetParameter("u_texture_one");
+		aPosition = effect.GetAttribLocation("a_position");
+		aTexCoord = effect.GetAttribLocation("a_texcoord_one");
+		aFrames = effect.GetAttribLocation("a_frames");
+
+		blendState = BlendState.NonPremultiplied;
+		frameDuration = 0.1f;
+		animationTime = 0.0f;
+		animationFrame = 0;
+	}
+
+	@Override
+	public void Dispose()
+	{
+		for(int i = 0; i < chunks.length; i++)
+		{
+			if(chunks[i].buffer != null)
+			{
+				chunks[i].buffer.Dispose();
+				chunks[i].buffer = null;
+			}
+		}
+
+		indexBuffer.Dispose();
+		effect.Dispose();
+	}
+
+	/**
+	 * Sets a tile, the chunk holding it gets rebuild when it is drawn next
+	 * @param tile the tile in the tileset or EMPTY
+	 */
+	public void SetTile(int x, int y, int tile)
+	{
+		if(x < 0 || y < 0 || x >= width || y >= height)
+			return;
+
+		int index = y * width + x;
+		if(tiles[index] == tile)
+			return;
+
+		tiles[index] = (short) tile;
+		chunks[(y / CHUNK_SIZE) * chunksX + (x / CHUNK_SIZE)].dirty = true;
+	}
+
+	public int GetTile(int x, int y)
+	{
+		if(x < 0 || y < 0 || x >= width || y >= height)
+			return EMPTY;
+
+		return tiles[y * width + x];
+	}
+
+	/**
+	 * Sets all tiles at once, row by row
+	 */
+	public void SetTiles(short[] data)
+	{
+		System.arraycopy(data, 0, tiles, 0, Math.min(data.length, tiles.length));
+
+		for(int i = 0; i < chunks.length; i++)
+			chunks[i].dirty = true;
+	}
+
+	/**
+	 * Sets the time every animation frame is shown
+	 */
+	public void SetFrameDuration(float seconds)
+	{
+		frameDuration = seconds;
+	}
+
+	public void SetBlendState(BlendState state)
+	{
+		blendState = state;
+	}
+
+	/**
+	 * Gets the amount of chunks drawn by the last draw call
+	 */
+	public int GetDrawnChunkCount()
+	{
+		return drawnChunkCount;
+	}
+
+	/**
+	 * Advances the tile animations
+	 */
+	public void Update(float dt)
+	{
+		animationTime += dt;
+		while(animationTime >= frameDuration && frameDuration > 0.0f)
+		{
+			animationTime -= frameDuration;
+			animationFrame = (animationFrame + 1) % frameWrap;
+		}
+	}
+
+	/**
+	 * Draws the chunks visible to the camera
+	 */
+	public void Draw(Camera2D camera)
+	{
+		Draw(camera.GetTransform(), camera.GetVisibleRectangle());
+	}
+
+	/**
+	 * Draws the chunks that intersect the visible area
+	 * @param transform the view projection matrix
+	 * @param visible the visible area in the world
+	 */
+	public void Draw(Mat4 transform, Rectangle visible)
+	{
+		drawnChunkCount = 0;
+
+		// find the visible chunks
+		float chunkWidth = CHUNK_SIZE * tileWidth;
+		float chunkHeight = CHUNK_SIZE * tileHeight;
+		int startX = Math.max(0, (int) Math.floor(visible.x / chunkWidth));
+		int startY = Math.max(0, (int) Math.floor(visible.y / chunkHeight));
+		int endX = Math.min(chunksX - 1, (int) Math.floor((visible.x + visible.width) / chunkWidth));
+		int endY = Math.min(chunksY - 1, (int) Math.floor((visible.y + visible.height) / chunkHeight));
+
+		if(startX > endX || startY > endY)
+			return;
+
+		// set states
+		matrixParameter.SetValue(transform.elements);
+		frameParameter.SetValue((float) animationFrame);
+		frameStepParameter.SetValue(tileSet.tileU);
+		textureParameter.SetValue(0);
+		effect.Apply();
+
+		graphics.SetBlendingState(blendState);
+		tileSet.texture.Bind(0);
+		indexBuffer.Bind();
+
+		for(int cy = startY; cy <= endY; cy++)
+		{
+			for(int cx = startX; cx <= endX; cx++)
+			{
+				Chunk chunk = chunks[cy * chunksX + cx];
+				if(chunk.dirty)
+					RebuildChunk(chunk, cx, cy);
+
+				if(chunk.tileCount <= 0)
+					continue;
+
+				chunk.buffer.Bind();
+				chunk.buffer.SetVertexAttribPointer(0, aPosition, 2, BYTES_PER_VERTEX);
+				chunk.buffer.SetVertexAttribPointer(2 * BYTES_PER_FLOAT, aTexCoord, 2, BYTES_PER_VERTEX);
+				chunk.buffer.SetVertexAttribPointer(4 * BYTES_PER_FLOAT, aFrames, 1, BYTES_PER_VERTEX);
+
+				glDrawElements(GL_TRIANGLES, chunk.tileCount * indicesPerTile, GL_UNSIGNED_SHORT, 0);
+				RenderStats.Increment(Stat.DRAW_CALLS);
+				drawnChunkCount++;
+			}
+		}
+	}
+
+	/**
+	 * Bakes the tiles of a chunk into its buffer
+	 */
+	private void RebuildChunk(Chunk chunk, int chunkX, int chunkY)
+	{
+		float[] vertices = chunkVertices;
+		TileSet set = tileSet;
+		float tileU = set.tileU;
+		float tileV = set.tileV;
+		int offset = 0;
+		int count = 0;
+
+		int startX = chunkX * CHUNK_SIZE;
+		int startY = chunkY * CHUNK_SIZE;
+		int endX = Math.min(startX + CHUNK_SIZE, width);
+		int endY = Math.min(startY + CHUNK_SIZE, height);
+
+		for(int y = startY; y < endY; y++)
+		{
+			for(int x = startX; x < endX; x++)
+			{
+				int tile = tiles[y * width + x];
+				if(tile < 0 || tile >= set.tileCount)
+					continue;
+
+				float left = x * tileWidth;
+				float top = y * tileHeight;
+				float right = left + tileWidth;
+				float bottom = top + tileHeight;
+				float u = set.GetU(tile);
+				float v = set.GetV(tile);
+				float frames = set.GetFrameCount(tile);
+
+				// corners in the same order as the spritebatch
+				offset = PutVertex(vertices, offset, left, top, u, v, frames);
+				offset = PutVertex(vertices, offset, right, top, u + tileU, v, frames);
+				offset = PutVertex(vertices, offset, left, bottom, u, v + tileV, frames);
+				offset = PutVertex(vertices, offset, right, bottom, u + tileU, v + tileV, frames);
+				count++;
+			}
+		}
+
+		// grow the buffer when needed
+		if(count > chunk.capacity)
+		{
+			if(chunk.buffer != null)
+				chunk.buffer.Dispose();
+
+			chunk.buffer = new VertexBuffer(count * verticesPerTile * VERTEX_ELEMENTS, true);
+			chunk.buffer.Create();
+			chunk.capacity = count;
+		}
+
+		if(count > 0)
+		{
+			chunk.buffer.Bind();
+			chunk.buffer.SetData(0, vertices, 0, offset);
+			chunk.buffer.Apply();
+		}
+
+		chunk.tileCount = count;
+		chunk.dirty = false;
+	}
+
+	private static int PutVertex(float[] vertices, int offset, float x, float y, float u, float v, float frames)
+	{
+		vertices[offset] = x;
+		vertices[offset + 1] = y;
+		vertices[offset + 2] = u;
+		vertices[offset + 3] = v;
+		vertices[offset + 4] = frames;
+
+		return offset + VERTEX_ELEMENTS;
+	}
+}
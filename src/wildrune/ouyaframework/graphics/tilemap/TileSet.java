@@ -0,0 +1,95 @@
+package wildrune.ouyaframework.graphics.tilemap;
+
+import wildrune.ouyaframework.graphics.basic.Texture2D;
+import android.util.Log;
+
+/**
+ * A texture split up in equally sized tiles, numbered row by row
+ * Animated tiles use the tiles after them on the same row as their frames.
+ * @author Wildrune
+ *
+ */
+public class TileSet
+{
+	// constants
+	private final static String LOG_TAG = "TileSet";
+	public final static int MAX_FRAMES = 16;
+
+	// members
+	public final Texture2D texture;
+	public final int tileWidth;
+	public final int tileHeight;
+	public final int columns;
+	public final int tileCount;
+
+	// normalized size of a tile
+	final float tileU;
+	final float tileV;
+
+	private final byte[] frameCounts;
+
+	/**
+	 * Creates a tileset
+	 * @param texture the texture holding the tiles
+	 * @param tileWidth the width of a tile in the texture in pixels
+	 * @param tileHeight the height of a tile in the texture in pixels
+	 */
+	public TileSet(Texture2D texture, int tileWidth, int tileHeight)
+	{
+		this.texture = texture;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+
+		columns = texture.width / tileWidth;
+		tileCount = columns * (texture.height / tileHeight);
+		tileU = (float)tileWidth / texture.width;
+		tileV = (float)tileHeight / texture.height;
+
+		frameCounts = new byte[tileCount];
+		for(int i = 0; i < tileCount; i++)
+			frameCounts[i] = 1;
+	}
+
+	/**
+	 * Makes a tile animated
+	 * @param tile the first frame of the animation
+	 * @param frameCount the amount of frames, the frames must be on the same row
+	 */
+	public void SetAnimation(int tile, int frameCount)
+	{
+		if(tile < 0 || tile >= tileCount)
+			return;
+
+		if(frameCount < 1 || frameCount > MAX_FRAMES || (tile % columns) + frameCount > columns)
+		{
+			Log.d(LOG_TAG, "Invalid animation for tile " + tile);
+			return;
+		}
+
+		frameCounts[tile] = (byte) frameCount;
+	}
+
+	/**
+	 * Gets the amount of animation frames of a tile, 1 if it is not animated
+	 */
+	public int GetFrameCount(int tile)
+	{
+		return frameCounts[tile];
+	}
+
+	/**
+	 * Gets the normalized left texture coordinate of a tile
+	 */
+	public float GetU(int tile)
+	{
+		return (tile % columns) * tileU;
+	}
+
+	/**
+	 * Gets the normalized top texture coordinate of a tile
+	 */
+	public float GetV(int tile)
+	{
+		return (tile / columns) * tileV;
+	}
+}
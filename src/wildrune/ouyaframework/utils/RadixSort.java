@@ -0,0 +1,130 @@
+package wildrune.ouyaframework.utils;
+
+/**
+ * LSD radix sort for 64 bit keys carrying an index permutation along
+ * Keys are compared as unsigned values and the sort is stable.
+ * Works on preallocated scratch buffers, so sorting does not allocate
+ * once the sorter has grown to the needed capacity.
+ * NOT THREAD SAFE
+ * @author Wildrune
+ *
+ */
+public class RadixSort
+{
+	// constants
+	private final static int RADIX_BITS = 8;
+	private final static int RADIX_SIZE = 1 << RADIX_BITS;
+	private final static int RADIX_MASK = RADIX_SIZE - 1;
+	private final static int PASSES = 64 / RADIX_BITS;
+
+	// scratch data
+	private final int[] histograms;
+	private long[] tempKeys;
+	private int[] tempIndices;
+
+	/**
+	 * Constructor
+	 * @param capacity the initial amount of keys this sorter can handle without growing
+	 */
+	public RadixSort(int capacity)
+	{
+		histograms = new int[PASSES * RADIX_SIZE];
+		tempKeys = new long[capacity];
+		tempIndices = new int[capacity];
+	}
+
+	/**
+	 * Sorts the keys ascending and applies the same permutation to the indices
+	 * @param keys the keys to sort
+	 * @param indices the indices belonging to the keys
+	 * @param count the amount of keys to sort
+	 */
+	public void Sort(long[] keys, int[] indices, int count)
+	{
+		if(count <= 1)
+			return;
+
+		// grow scratch buffers if needed
+		if(count > tempKeys.length)
+		{
+			tempKeys = new long[keys.length];
+			tempIndices = new int[keys.length];
+		}
+
+		// build all histograms in a single pass
+		int[] hist = histograms;
+		for(int i = 0; i < hist.length; i++)
+			hist[i] = 0;
+
+		for(int i = 0; i < count; i++)
+		{
+			long key = keys[i];
+			for(int pass = 0; pass < PASSES; pass++)
+			{
+				hist[pass * RADIX_SIZE + (int)((key >>> (pass * RADIX_BITS)) & RADIX_MASK)]++;
+			}
+		}
+
+		long[] srcKeys = keys;
+		int[] srcIndices = indices;
+		long[] dstKeys = tempKeys;
+		int[] dstIndices = tempIndices;
+
+		for(int pass = 0; pass < PASSES; pass++)
+		{
+			int histOffset = pass * RADIX_SIZE;
+			int shift = pass * RADIX_BITS;
+
+			// skip this digit if all keys share it
+			int firstDigit = (int)((srcKeys[0] >>> shift) & RADIX_MASK);
+			if(hist[histOffset + firstDigit] == count)
+				continue;
+
+			// turn counts into start offsets
+			int sum = 0;
+			for(int i = 0; i < RADIX_SIZE; i++)
+			{
+				int digitCount = hist[histOffset + i];
+				hist[histOffset + i] = sum;
+				sum += digitCount;
+			}
+
+			// scatter
+			for(int i = 0; i < count; i++)
+			{
+				long key = srcKeys[i];
+				int dst = hist[histOffset + (int)((key >>> shift) & RADIX_MASK)]++;
+				dstKeys[dst] = key;
+				dstIndices[dst] = srcIndices[i];
+			}
+
+			// swap source and destination
+			long[] swapKeys = srcKeys;
+			srcKeys = dstKeys;
+			dstKeys = swapKeys;
+
+			int[] swapIndices = srcIndices;
+			srcIndices = dstIndices;
+			dstIndices = swapIndices;
+		}
+
+		// make sure the results end up in the callers arrays
+		if(srcKeys != keys)
+		{
+			System.arraycopy(srcKeys, 0, keys, 0, count);
+			System.arraycopy(srcIndices, 0, indices, 0, count);
+		}
+	}
+
+	/**
+	 * Maps a float on an unsigned 32 bit value with the same ordering
+	 * @param value the float to map
+	 * @return a key that sorts in the same order as the float
+	 */
+	public static long FloatToKey(float value)
+	{
+		int bits = Float.floatToRawIntBits(value);
+		bits ^= (bits >> 31) | 0x80000000;
+		return bits & 0xFFFFFFFFL;
+	}
+}
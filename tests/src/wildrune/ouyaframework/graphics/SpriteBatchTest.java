@@ -0,0 +1,52 @@
+package wildrune.ouyaframework.graphics;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the texture table of the spritebatch
+ * @author Wildrune
+ *
+ */
+public class SpriteBatchTest extends TestCase
+{
+	// same as the initial texture table size of the spritebatch
+	private final static int INITIAL_TABLE_SIZE = 8;
+
+	/**
+	 * Adds more distinct textures than the initial table holds, like a single Begin/End
+	 * would do, and checks every slot is still unbound when the batch is flushed
+	 */
+	public void testMoreTexturesThanInitialTable()
+	{
+		int[] units = new int[INITIAL_TABLE_SIZE];
+		int textureCount = INITIAL_TABLE_SIZE * 2 + 3;
+
+		// the same steps GetTextureSlot takes for every new texture
+		for(int slot = 0; slot < textureCount; slot++)
+		{
+			if(slot >= units.length)
+				units = SpriteBatch.GrowTextureUnits(units, units.length * 2, slot);
+
+			units[slot] = -1;
+		}
+
+		for(int slot = 0; slot < textureCount; slot++)
+			assertEquals("slot " + slot + " must not look bound", -1, units[slot]);
+	}
+
+	/**
+	 * Growing keeps the units of the slots already in use
+	 */
+	public void testGrowKeepsBoundUnits()
+	{
+		int[] units = { 3, -1, 0, 1, -1, 2, -1, 7 };
+		int[] grown = SpriteBatch.GrowTextureUnits(units, 16, units.length);
+
+		assertEquals(16, grown.length);
+		for(int i = 0; i < units.length; i++)
+			assertEquals(units[i], grown[i]);
+
+		for(int i = units.length; i < grown.length; i++)
+			assertEquals(-1, grown[i]);
+	}
+}
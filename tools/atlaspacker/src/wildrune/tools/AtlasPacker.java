@@ -0,0 +1,284 @@
+package wildrune.tools;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import javax.imageio.ImageIO;
+
+import wildrune.ouyaframework.graphics.atlas.MaxRectsPacker;
+
+/**
+ * Desktop tool packing a directory of PNGs into the binary atlas format
+ * read by ResourceSystem.LoadTextureAtlasFile.
+ * Regions are named after their path in the directory without extension, like "ui/button".
+ * @author Wildrune
+ *
+ */
+public class AtlasPacker
+{
+	// must match TextureAtlas
+	private final static int FILE_MAGIC = 0x41544C53;
+	private final static int FILE_VERSION = 1;
+
+	// a trimmed image to pack
+	private final static class Sprite
+	{
+		String name;
+		BufferedImage image;
+		int offsetX, offsetY;
+		int originalWidth, originalHeight;
+		int page = -1;
+		int x, y;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 2)
+		{
+			System.out.println("Usage: AtlasPacker <input directory> <output file without extension> [maxPageSize] [padding] [extrude]");
+			System.exit(1);
+		}
+
+		File input = new File(args[0]);
+		File output = new File(args[1]);
+		int maxPageSize = args.length > 2 ? Integer.parseInt(args[2]) : 2048;
+		int padding = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+		int extrude = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+		// load and trim all images
+		ArrayList<Sprite> sprites = new ArrayList<Sprite>();
+		CollectSprites(input, "", sprites);
+
+		if(sprites.isEmpty())
+		{
+			System.out.println("No PNG files found in " + input);
+			System.exit(1);
+		}
+
+		// the loader looks regions up by sorted hash, so hashes have to be unique
+		Collections.sort(sprites, new Comparator<Sprite>()
+		{
+			@Override
+			public int compare(Sprite a, Sprite b)
+			{
+				return Integer.compare(a.name.hashCode(), b.name.hashCode());
+			}
+		});
+
+		for(int i = 1; i < sprites.size(); i++)
+		{
+			if(sprites.get(i).name.hashCode() == sprites.get(i - 1).name.hashCode())
+			{
+				System.out.println("Name hash collision: " + sprites.get(i).name + " and " + sprites.get(i - 1).name);
+				System.exit(1);
+			}
+		}
+
+		// biggest first
+		ArrayList<Sprite> order = new ArrayList<Sprite>(sprites);
+		Collections.sort(order, new Comparator<Sprite>()
+		{
+			@Override
+			public int compare(Sprite a, Sprite b)
+			{
+				return Integer.compare(Math.max(b.image.getWidth(), b.image.getHeight()),
+						Math.max(a.image.getWidth(), a.image.getHeight()));
+			}
+		});
+
+		// fill pages
+		MaxRectsPacker packer = new MaxRectsPacker(maxPageSize, maxPageSize);
+		ArrayList<String> pageNames = new ArrayList<String>();
+		int border = extrude * 2 + padding;
+		int[] position = new int[2];
+		int remaining = order.size();
+
+		while(remaining > 0)
+		{
+			packer.Reset();
+			int page = pageNames.size();
+			int pageCount = 0;
+
+			for(Sprite sprite : order)
+			{
+				if(sprite.page != -1 || !packer.Insert(sprite.image.getWidth() + border, sprite.image.getHeight() + border, position))
+					continue;
+
+				sprite.page = page;
+				sprite.x = position[0] + extrude;
+				sprite.y = position[1] + extrude;
+				pageCount++;
+			}
+
+			if(pageCount == 0)
+			{
+				for(Sprite sprite : order)
+				{
+					if(sprite.page == -1)
+						System.out.println("Image too big for a page: " + sprite.name);
+				}
+
+				System.exit(1);
+			}
+
+			String pageName = output.getName() + "_" + page + ".png";
+			WritePage(new File(output.getParentFile(), pageName), sprites, page,
+					NextPower2(packer.GetUsedWidth()), NextPower2(packer.GetUsedHeight()), extrude);
+			pageNames.add(pageName);
+			remaining -= pageCount;
+		}
+
+		WriteAtlas(new File(output.getPath() + ".atlas"), pageNames, sprites);
+		System.out.println("Packed " + sprites.size() + " images on " + pageNames.size() + " pages");
+	}
+
+	/**
+	 * Loads and trims all PNGs in a directory and its sub directories
+	 */
+	private static void CollectSprites(File directory, String prefix, ArrayList<Sprite> sprites) throws IOException
+	{
+		File[] files = directory.listFiles();
+		if(files == null)
+			return;
+
+		for(File file : files)
+		{
+			if(file.isDirectory())
+			{
+				CollectSprites(file, prefix + file.getName() + "/", sprites);
+				continue;
+			}
+
+			String name = file.getName();
+			if(!name.toLowerCase().endsWith(".png"))
+				continue;
+
+			BufferedImage image = ImageIO.read(file);
+			Sprite sprite = new Sprite();
+			sprite.name = prefix + name.substring(0, name.length() - 4);
+			sprite.originalWidth = image.getWidth();
+			sprite.originalHeight = image.getHeight();
+			Trim(sprite, image);
+			sprites.add(sprite);
+		}
+	}
+
+	/**
+	 * Cuts off the fully transparent border of an image
+	 */
+	private static void Trim(Sprite sprite, BufferedImage image)
+	{
+		int left = image.getWidth(), top = image.getHeight(), right = -1, bottom = -1;
+
+		for(int y = 0; y < image.getHeight(); y++)
+		{
+			for(int x = 0; x < image.getWidth(); x++)
+			{
+				if((image.getRGB(x, y) >>> 24) == 0)
+					continue;
+
+				left = Math.min(left, x);
+				top = Math.min(top, y);
+				right = Math.max(right, x);
+				bottom = Math.max(bottom, y);
+			}
+		}
+
+		// keep a single pixel of fully transparent images
+		if(right < 0)
+		{
+			left = top = right = bottom = 0;
+		}
+
+		sprite.offsetX = left;
+		sprite.offsetY = top;
+		sprite.image = image.getSubimage(left, top, right - left + 1, bottom - top + 1);
+	}
+
+	/**
+	 * Draws the sprites of a page with their edges extruded and saves it
+	 */
+	private static void WritePage(File file, ArrayList<Sprite> sprites, int page, int width, int height, int extrude) throws IOException
+	{
+		BufferedImage pageImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+
+		for(Sprite sprite : sprites)
+		{
+			if(sprite.page != page)
+				continue;
+
+			int w = sprite.image.getWidth();
+			int h = sprite.image.getHeight();
+
+			for(int y = -extrude; y < h + extrude; y++)
+			{
+				for(int x = -extrude; x < w + extrude; x++)
+				{
+					int sourceX = Math.min(Math.max(x, 0), w - 1);
+					int sourceY = Math.min(Math.max(y, 0), h - 1);
+					pageImage.setRGB(sprite.x + x, sprite.y + y, sprite.image.getRGB(sourceX, sourceY));
+				}
+			}
+		}
+
+		ImageIO.write(pageImage, "png", file);
+	}
+
+	/**
+	 * Writes the page names and the region table sorted by name hash
+	 */
+	private static void WriteAtlas(File file, ArrayList<String> pageNames, ArrayList<Sprite> sprites) throws IOException
+	{
+		DataOutputStream output = new DataOutputStream(new FileOutputStream(file));
+
+		try
+		{
+			output.writeInt(FILE_MAGIC);
+			output.writeInt(FILE_VERSION);
+			output.writeInt(pageNames.size());
+			output.writeInt(sprites.size());
+
+			for(String name : pageNames)
+			{
+				byte[] bytes = name.getBytes("UTF-8");
+				output.writeShort(bytes.length);
+				output.write(bytes);
+			}
+
+			for(Sprite sprite : sprites)
+				output.writeInt(sprite.name.hashCode());
+
+			for(Sprite sprite : sprites)
+			{
+				output.writeShort(sprite.page);
+				output.writeShort(sprite.x);
+				output.writeShort(sprite.y);
+				output.writeShort(sprite.image.getWidth());
+				output.writeShort(sprite.image.getHeight());
+				output.writeShort(sprite.offsetX);
+				output.writeShort(sprite.offsetY);
+				output.writeShort(sprite.originalWidth);
+				output.writeShort(sprite.originalHeight);
+			}
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+
+	private static int NextPower2(int x)
+	{
+		int power = 1;
+		while(power < x)
+			power <<= 1;
+
+		return power;
+	}
+}